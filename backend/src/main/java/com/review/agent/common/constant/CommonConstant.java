@@ -24,6 +24,14 @@ public class CommonConstant {
      * 文件处理状态-处理错误
      */
     public static final int FILE_PROCESS_STATUS_ERROR = 4;
+    /**
+     * 文件处理状态-分析已取消
+     */
+    public static final int FILE_PROCESS_STATUS_CANCELLED = 5;
+    /**
+     * 文件处理状态-分析超时
+     */
+    public static final int FILE_PROCESS_STATUS_TIMEOUT = 6;
 
     // region AI分析状态
 
@@ -38,6 +46,65 @@ public class CommonConstant {
 
     // endregion
 
+    // region 分析任务状态
+
+    /**
+     * 分析任务状态-排队中
+     */
+    public static final int JOB_STATUS_QUEUED = 0;
+    /**
+     * 分析任务状态-执行中
+     */
+    public static final int JOB_STATUS_RUNNING = 1;
+    /**
+     * 分析任务状态-已完成
+     */
+    public static final int JOB_STATUS_SUCCEEDED = 2;
+    /**
+     * 分析任务状态-失败
+     */
+    public static final int JOB_STATUS_FAILED = 3;
+    /**
+     * 分析任务状态-已取消
+     */
+    public static final int JOB_STATUS_CANCELLED = 4;
+    /**
+     * 分析任务状态-超时
+     */
+    public static final int JOB_STATUS_TIMEOUT = 5;
+    /**
+     * 分析任务失败原因的最大长度，与 analysis_job.error_message 列长度一致
+     */
+    public static final int JOB_ERROR_MESSAGE_MAX_LENGTH = 500;
+
+    // endregion
+
+    // region 分析任务优先级
+
+    /**
+     * 分析任务优先级-交互（用户手动发起）
+     */
+    public static final int JOB_PRIORITY_INTERACTIVE = 0;
+    /**
+     * 分析任务优先级-后台（批量分析、定时任务）
+     */
+    public static final int JOB_PRIORITY_BACKGROUND = 1;
+
+    // endregion
+
+    // region 分析工作流模式
+
+    /**
+     * 分析工作流-标准模式（会话提取 -> 标签分类 -> 会话分析）
+     */
+    public static final String GRAPH_MODE_STANDARD = "standard";
+    /**
+     * 分析工作流-一体化模式（会话提取 -> 分类分析一体化）
+     */
+    public static final String GRAPH_MODE_FUSED = "fused";
+
+    // endregion
+
     /**
      * 报告类型-日报
      */
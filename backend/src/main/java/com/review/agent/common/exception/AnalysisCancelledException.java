@@ -0,0 +1,21 @@
+package com.review.agent.common.exception;
+
+/**
+ * 分析任务被取消或超时
+ */
+public class AnalysisCancelledException extends RuntimeException {
+
+    /**
+     * 是否因超时取消
+     */
+    private final boolean timeout;
+
+    public AnalysisCancelledException(String message, boolean timeout) {
+        super(message);
+        this.timeout = timeout;
+    }
+
+    public boolean isTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,11 @@
+package com.review.agent.common.exception;
+
+/**
+ * 文件正被其他分析任务执行，当前任务需要稍后重新派发
+ */
+public class FileLockedException extends RuntimeException {
+
+    public FileLockedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.review.agent.common.exception;
+
+/**
+ * 模型输出不符合预期的 JSON 结构
+ */
+public class StructuredOutputException extends RuntimeException {
+
+    public StructuredOutputException(String message) {
+        super(message);
+    }
+}
@@ -43,8 +43,12 @@ public class AIConfig {
 //    }
 
 
+    /**
+     * 向量模型，启用自适应并发限制时与对话模型共用并发上限
+     */
     @Bean
-    public EmbeddingModel embeddingModel(DashScopeApi dashScopeApi) {
-        return new DashScopeEmbeddingModel(dashScopeApi);
+    public EmbeddingModel embeddingModel(DashScopeApi dashScopeApi, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        EmbeddingModel embeddingModel = new DashScopeEmbeddingModel(dashScopeApi);
+        return concurrencyLimiter.isEnabled() ? new LimitedEmbeddingModel(embeddingModel, concurrencyLimiter) : embeddingModel;
     }
 }
@@ -0,0 +1,240 @@
+package com.review.agent.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模型调用自适应并发限制（AIMD）：所有 DashScope 调用共用一个并发上限，
+ * 调用耗时平稳时每轮加 1，遇到限流（429）、超时或耗时突增时按比例下调，
+ * 使并发贴近服务端的实际承载能力。
+ * 耗时主要取决于输出长度，流式调用以首个片段的耗时为准，非流式调用已知输出 token 数时按每个 token 的耗时比较，
+ * 被取消的调用（如对冲请求中落后的一方）只释放名额，不计入耗时
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+    @Resource
+    private LlmLimiterConfig limiterConfig;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    /**
+     * 每类调用的基准耗时（纳秒），不同客户端的请求规模差别很大，分开统计；
+     * 首个片段耗时、每个 token 耗时与完整耗时的量纲不同，也分开统计
+     */
+    private final Map<String, Double> baselineNanos = new HashMap<>();
+    private volatile double limit;
+    private volatile int inFlight;
+    /**
+     * 正在等待名额的调用数量
+     */
+    private volatile int waiting;
+    private long lastBackoffNanos;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        limit = limiterConfig.getInitialLimit();
+        Gauge.builder("llm.concurrency.limit", this, limiter -> limiter.limit)
+                .description("模型调用当前的并发上限")
+                .register(meterRegistry);
+        Gauge.builder("llm.concurrency.inflight", this, limiter -> limiter.inFlight)
+                .description("进行中的模型调用数量")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("llm.concurrency.rejected")
+                .description("等待并发名额超时被拒绝的模型调用数量")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return limiterConfig.isEnabled();
+    }
+
+    /**
+     * 当前的并发上限
+     */
+    public int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 是否有调用在等待名额（并发已用满）
+     */
+    public boolean hasWaiting() {
+        return waiting > 0;
+    }
+
+    /**
+     * 获取并发名额，名额用完时等待，超过等待时间后拒绝
+     * @param client 调用方（客户端名称）
+     * @return 并发名额，调用结束后必须释放
+     */
+    public Permit acquire(String client) {
+        long remaining = TimeUnit.SECONDS.toNanos(limiterConfig.getAcquireTimeoutSeconds());
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedCounter.increment();
+                        throw new IllegalStateException("model concurrency limit reached, limit: " + (int) limit);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for model concurrency", e);
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(client, System.nanoTime());
+    }
+
+    /**
+     * 释放并发名额并根据调用结果调整并发上限
+     * @param permit 并发名额
+     * @param error 调用异常，成功时为 null
+     */
+    private void release(Permit permit, Throwable error) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            inFlight--;
+            if (permit.cancelled) {
+                available.signalAll();
+                return;
+            }
+            String reason = error == null ? null : classify(error);
+            if (error == null) {
+                String key = permit.client;
+                double latency = now - permit.startNanos;
+                if (permit.firstChunkNanos != 0) {
+                    key += ":first-chunk";
+                    latency = permit.firstChunkNanos - permit.startNanos;
+                } else if (permit.outputTokens > 0) {
+                    key += ":per-token";
+                    latency /= permit.outputTokens;
+                }
+                Double baseline = baselineNanos.get(key);
+                double smoothing = limiterConfig.getLatencySmoothing();
+                baselineNanos.put(key, baseline == null ? latency : baseline + smoothing * (latency - baseline));
+                if (baseline != null && latency > baseline * limiterConfig.getLatencyTolerance()) {
+                    reason = "latency";
+                } else if (inFlight + 1 >= limit / 2) {
+                    // 只在并发确实用到一定程度时才上调，避免空闲时上限虚高
+                    limit = Math.min(limiterConfig.getMaxLimit(), limit + 1 / limit);
+                }
+            }
+            // 同一轮内发出的请求只下调一次
+            if (reason != null && permit.startNanos > lastBackoffNanos) {
+                lastBackoffNanos = now;
+                double previous = limit;
+                limit = Math.max(limiterConfig.getMinLimit(), limit * limiterConfig.getBackoffRatio());
+                meterRegistry.counter("llm.concurrency.backoff", "reason", reason).increment();
+                log.info("模型并发上限下调, 原因: {}, {} -> {}", reason, (int) previous, (int) limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断异常是否说明服务端已过载
+     * @param error 调用异常
+     * @return throttled / timeout，其他异常为 null
+     */
+    private String classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException.TooManyRequests) {
+                return "throttled";
+            }
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+                return "timeout";
+            }
+            String message = cause.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Throttling"))) {
+                return "throttled";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 并发名额
+     */
+    public final class Permit {
+        private final String client;
+        private final long startNanos;
+        private volatile long firstChunkNanos;
+        private volatile long outputTokens;
+        private boolean cancelled;
+        private boolean released;
+
+        private Permit(String client, long startNanos) {
+            this.client = client;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 记录流式调用首个片段到达的时间，之后的片段忽略
+         */
+        public void firstChunk() {
+            if (firstChunkNanos == 0) {
+                firstChunkNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * 记录非流式调用的输出 token 数，耗时按每个 token 比较
+         * @param outputTokens 输出 token 数
+         */
+        public void outputTokens(long outputTokens) {
+            this.outputTokens = outputTokens;
+        }
+
+        /**
+         * 调用被取消时释放名额，不计入耗时、不调整并发上限
+         */
+        public synchronized void cancel() {
+            if (!released) {
+                cancelled = true;
+                release(null);
+            }
+        }
+
+        /**
+         * 释放名额，重复释放时忽略
+         * @param error 调用异常，成功时为 null
+         */
+        public synchronized void release(Throwable error) {
+            if (!released) {
+                released = true;
+                AdaptiveConcurrencyLimiter.this.release(this, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 图节点内会话级并发配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.concurrency")
+public class AnalysisConcurrencyConfig {
+
+    /**
+     * 会话任务线程数
+     */
+    private int executorThreads = 16;
+
+    /**
+     * 未单独配置的模型默认的并发调用上限
+     */
+    private int defaultParallelism = 4;
+
+    /**
+     * 每个模型的并发调用上限，key 为模型名称；启用自适应并发限制时由自适应上限决定实际并发，这里的值不再限制（本地模型除外）
+     */
+    private Map<String, Integer> modelParallelism = new HashMap<>();
+
+    /**
+     * 后台任务最多占用模型并发上限的比例，其余并发始终留给交互任务
+     */
+    private double backgroundShare = 0.5;
+
+    /**
+     * 标签分类节点是否按会话并发调用
+     */
+    private boolean classifyParallel = true;
+
+    /**
+     * 获取模型的并发调用上限
+     * @param model 模型名称
+     * @return 并发上限
+     */
+    public int getParallelism(String model) {
+        return Math.max(1, modelParallelism.getOrDefault(model, defaultParallelism));
+    }
+
+    /**
+     * 获取后台任务的并发调用上限
+     * @param parallelism 模型的并发上限
+     * @return 并发上限
+     */
+    public int getBackgroundParallelism(int parallelism) {
+        return Math.max(1, (int) (parallelism * backgroundShare));
+    }
+
+    /**
+     * 会话任务线程池，用于节点内按会话并发调用模型；启用自适应并发限制时线程数不少于其上限，使自适应上限能真正生效
+     */
+    @Bean(name = "sessionTaskExecutor")
+    public ThreadPoolTaskExecutor sessionTaskExecutor(LlmLimiterConfig limiterConfig) {
+        int threads = limiterConfig.isEnabled() ? Math.max(executorThreads, limiterConfig.getMaxLimit()) : executorThreads;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("SessionTask-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
@@ -0,0 +1,101 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 分析任务执行配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.job")
+public class AnalysisJobConfig {
+
+    /**
+     * 全局同时执行的分析任务数量
+     */
+    private int workers = 4;
+
+    /**
+     * 单个用户同时执行的分析任务数量
+     */
+    private int perUserConcurrency = 2;
+
+    /**
+     * 任务最大尝试次数
+     */
+    private int maxAttempts = 2;
+
+    /**
+     * 单个任务的最长执行时间（秒），超过后取消，0 表示不限制
+     */
+    private int timeoutSeconds = 1800;
+
+    /**
+     * 单个节点的最长执行时间（秒），超过后取消，0 表示不限制
+     */
+    private int nodeTimeoutSeconds = 600;
+
+    /**
+     * 后台任务最多同时占用的执行线程数，其余线程始终留给交互任务
+     */
+    private int backgroundWorkers = 2;
+
+    /**
+     * 文件正被其他任务分析时，任务重新排队并延迟该时间（秒）后再派发
+     */
+    private int lockRetryDelaySeconds = 30;
+
+    /**
+     * 交互任务从入队到完成的目标耗时（秒）
+     */
+    private int interactiveSloSeconds = 120;
+
+    /**
+     * 后台任务从入队到完成的目标耗时（秒）
+     */
+    private int backgroundSloSeconds = 7200;
+
+    /**
+     * 多实例部署：任务经 Redis Stream 分发，每个实例按 workers 消费
+     */
+    private boolean distributed = false;
+
+    /**
+     * 任务消息流 key 前缀，交互、后台任务各一个流
+     */
+    private String streamKey = "analysis-job-stream";
+
+    /**
+     * 消费组名称，所有实例共用
+     */
+    private String streamGroup = "analysis-workers";
+
+    /**
+     * 消息未确认超过该时间（秒）视为执行实例已宕机，由其他实例认领
+     */
+    private int streamReclaimIdleSeconds = 120;
+
+    /**
+     * 消息流超过该数量时裁剪已确认的消息（近似裁剪），未投递和未确认的消息始终保留
+     */
+    private int streamMaxLength = 10000;
+
+    /**
+     * 分析任务线程池，线程数与 workers 一致，由调度器保证不会超额提交
+     */
+    @Bean(name = "analysisJobExecutor")
+    public ThreadPoolTaskExecutor analysisJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix("AnalysisJob-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
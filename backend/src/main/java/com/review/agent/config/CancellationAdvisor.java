@@ -0,0 +1,60 @@
+package com.review.agent.config;
+
+import com.review.agent.graph.support.AnalysisCancellation;
+import jakarta.annotation.Resource;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * 取消检查：分析任务取消后不再发起模型调用，进行中的调用被中断后统一抛出取消异常
+ */
+@Component
+public class CancellationAdvisor implements CallAdvisor, StreamAdvisor {
+    @Resource
+    private AnalysisCancellation analysisCancellation;
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        Object usageKey = chatClientRequest.context().get(TokenUsageTracker.USAGE_KEY);
+        if (usageKey == null) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        String key = usageKey.toString();
+        analysisCancellation.enter(key);
+        try {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        } catch (RuntimeException e) {
+            // 中断导致的 IO 异常、重试中断等都转换为取消异常
+            analysisCancellation.checkCancelled(key);
+            throw e;
+        } finally {
+            analysisCancellation.exit(key);
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        Object usageKey = chatClientRequest.context().get(TokenUsageTracker.USAGE_KEY);
+        if (usageKey != null) {
+            analysisCancellation.checkCancelled(usageKey.toString());
+        }
+        return streamAdvisorChain.nextStream(chatClientRequest);
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 在响应缓存之前执行
+        return -2;
+    }
+}
@@ -0,0 +1,67 @@
+package com.review.agent.config;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import reactor.core.publisher.Flux;
+
+/**
+ * 模型调用并发限制：每次实际发往模型的调用先从 {@link AdaptiveConcurrencyLimiter} 获取名额，
+ * 排在取消检查和响应缓存之后，缓存命中不占用名额
+ */
+public class ConcurrencyLimitAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final String client;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitAdvisor(String client, AdaptiveConcurrencyLimiter limiter) {
+        this.client = client;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(client);
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            Usage usage = response.chatResponse() == null ? null : response.chatResponse().getMetadata().getUsage();
+            if (usage != null && usage.getCompletionTokens() != null) {
+                permit.outputTokens(usage.getCompletionTokens());
+            }
+            permit.release(null);
+            return response;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        // 分析节点在自己的工作线程上订阅并阻塞等待结果，名额在订阅线程上获取，取消任务时可被中断；
+        // 耗时以首个片段为准，不受输出长度影响
+        return Flux.defer(() -> {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(client);
+            return streamAdvisorChain.nextStream(chatClientRequest)
+                    .doOnNext(response -> permit.firstChunk())
+                    .doOnComplete(() -> permit.release(null))
+                    .doOnError(permit::release)
+                    .doOnCancel(permit::cancel);
+        });
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 在对冲请求之后、TokenLoggerAdvisor 之前执行，原请求和对冲请求各占一个名额
+        return 1;
+    }
+}
@@ -1,11 +1,15 @@
 package com.review.agent.config;
 
 import com.alibaba.cloud.ai.graph.*;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
 import com.alibaba.cloud.ai.graph.checkpoint.config.SaverConfig;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
+import com.review.agent.graph.nodes.ClassifyAnalysisNode;
 import com.review.agent.graph.nodes.DataAnalysisNode;
 import com.review.agent.graph.nodes.SessionExtractionNode;
 import com.review.agent.graph.nodes.TagClassifyNode;
+import com.review.agent.graph.support.TimedNodeAction;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -16,6 +20,9 @@ import static com.alibaba.cloud.ai.graph.OverAllState.DEFAULT_INPUT_KEY;
 import static com.alibaba.cloud.ai.graph.StateGraph.END;
 import static com.alibaba.cloud.ai.graph.StateGraph.START;
 import static com.alibaba.cloud.ai.graph.action.AsyncNodeAction.node_async;
+import static com.review.agent.config.MultiLLMConfig.ANALYSIS_MODEL;
+import static com.review.agent.config.MultiLLMConfig.CLASSIFY_MODEL;
+import static com.review.agent.config.MultiLLMConfig.EXTRACT_MODEL;
 
 /**
  * 工作流配置
@@ -31,9 +38,26 @@ public class GraphConfig {
     @Resource
     private TagClassifyNode tagClassifyNode;
 
+    @Resource
+    private ClassifyAnalysisNode classifyAnalysisNode;
+
     @Resource
     private SaverConfig saverConfig;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 为节点增加耗时、异常指标，并使节点内的模型调用按节点统计
+     * @param node 节点名称
+     * @param model 节点主要调用的模型
+     * @param action 节点
+     * @return 带指标的节点
+     */
+    private NodeAction timed(String node, String model, NodeAction action) {
+        return new TimedNodeAction(node, model, action, meterRegistry);
+    }
+
     @Bean
     public KeyStrategyFactory keyStrategyFactory() {
         return new KeyStrategyFactoryBuilder().addStrategy(DEFAULT_INPUT_KEY, KeyStrategy.REPLACE)
@@ -50,9 +74,9 @@ public class GraphConfig {
 
         return new StateGraph("Review Agent Workflow", keyStrategyFactory)
                 // 添加节点
-                .addNode("session_extraction_agent", node_async(sessionExtractionNode))
-                .addNode("analysis_agent", node_async(dataAnalysisNode))
-                .addNode("tag_classify_agent", node_async(tagClassifyNode))
+                .addNode("session_extraction_agent", node_async(timed("session_extraction_agent", EXTRACT_MODEL, sessionExtractionNode)))
+                .addNode("analysis_agent", node_async(timed("analysis_agent", ANALYSIS_MODEL, dataAnalysisNode)))
+                .addNode("tag_classify_agent", node_async(timed("tag_classify_agent", CLASSIFY_MODEL, tagClassifyNode)))
                 // 定义边
                 .addEdge(START, "session_extraction_agent")
                 .addEdge("session_extraction_agent", "tag_classify_agent")
@@ -60,6 +84,22 @@ public class GraphConfig {
                 .addEdge("analysis_agent", END);
     }
 
+    /**
+     * 分类分析一体化工作流：每个会话只调用一次模型完成分类与分析
+     */
+    @Bean
+    public StateGraph fusedAnalysisGraph(KeyStrategyFactory keyStrategyFactory) throws GraphStateException {
+
+        return new StateGraph("Review Agent Fused Workflow", keyStrategyFactory)
+                // 添加节点
+                .addNode("session_extraction_agent", node_async(timed("session_extraction_agent", EXTRACT_MODEL, sessionExtractionNode)))
+                .addNode("classify_analysis_agent", node_async(timed("classify_analysis_agent", ANALYSIS_MODEL, classifyAnalysisNode)))
+                // 定义边
+                .addEdge(START, "session_extraction_agent")
+                .addEdge("session_extraction_agent", "classify_analysis_agent")
+                .addEdge("classify_analysis_agent", END);
+    }
+
     /**
      * 报告工作流
      */
@@ -68,9 +108,9 @@ public class GraphConfig {
 
         return new StateGraph("Review Agent Workflow", keyStrategyFactory)
                 // 添加节点
-                .addNode("session_extraction_agent", node_async(sessionExtractionNode))
-                .addNode("analysis_agent", node_async(dataAnalysisNode))
-                .addNode("tag_classify_agent", node_async(tagClassifyNode))
+                .addNode("session_extraction_agent", node_async(timed("session_extraction_agent", EXTRACT_MODEL, sessionExtractionNode)))
+                .addNode("analysis_agent", node_async(timed("analysis_agent", ANALYSIS_MODEL, dataAnalysisNode)))
+                .addNode("tag_classify_agent", node_async(timed("tag_classify_agent", CLASSIFY_MODEL, tagClassifyNode)))
                 // 定义边
                 .addEdge(START, "session_extraction_agent")
                 .addEdge("session_extraction_agent", "analysis_agent")
@@ -90,6 +130,14 @@ public class GraphConfig {
         return compiledGraph;
     }
 
+    @Bean(name = "fusedAnalysisCompiledGraph")
+    public CompiledGraph fusedAnalysisCompiledGraph(@Qualifier("fusedAnalysisGraph") StateGraph stateGraph) throws GraphStateException {
+        return stateGraph.compile(
+                CompileConfig.builder()
+                        .saverConfig(saverConfig)
+                        .build());
+    }
+
     @Bean(name = "reportCompiledGraph")
     public CompiledGraph reportCompiledGraph(@Qualifier("reportGraph") StateGraph stateGraph) throws GraphStateException {
         return stateGraph.compile(
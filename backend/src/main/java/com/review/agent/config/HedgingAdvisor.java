@@ -0,0 +1,269 @@
+package com.review.agent.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求：调用超过近期耗时的分位数仍未返回时，再发出一个相同的请求，先返回的结果生效，另一个取消。
+ * 对冲数量受预算限制（按调用数量的比例累积），避免服务端整体变慢时请求量翻倍。
+ * 流式调用以首个响应片段的耗时为准：某个请求先开始输出后即采用该请求，不再对冲。
+ * 排在响应缓存之后、并发限制之前，缓存命中不会对冲，对冲请求同样占用并发名额
+ */
+@Slf4j
+public class HedgingAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final String client;
+    private final LlmHedgingConfig hedgingConfig;
+    private final Executor executor;
+
+    /**
+     * 非流式调用的完整耗时、流式调用的首个片段耗时
+     */
+    private final LatencyWindow callLatency;
+    private final LatencyWindow firstChunkLatency;
+    private double budget;
+
+    private final Counter callCounter;
+    private final Counter hedgeCounter;
+    private final Counter winCounter;
+    private final Counter skippedCounter;
+
+    public HedgingAdvisor(String client, LlmHedgingConfig hedgingConfig, Executor executor, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.hedgingConfig = hedgingConfig;
+        this.executor = executor;
+        this.callLatency = new LatencyWindow(hedgingConfig.getWindowSize());
+        this.firstChunkLatency = new LatencyWindow(hedgingConfig.getWindowSize());
+        this.budget = hedgingConfig.getBudgetBurst();
+
+        callCounter = Counter.builder("llm.hedge.calls").tag("client", client)
+                .description("启用对冲的模型调用次数").register(meterRegistry);
+        hedgeCounter = Counter.builder("llm.hedge.fired").tag("client", client)
+                .description("发出的对冲请求数量").register(meterRegistry);
+        winCounter = Counter.builder("llm.hedge.wins").tag("client", client)
+                .description("对冲请求先于原请求返回的次数").register(meterRegistry);
+        skippedCounter = Counter.builder("llm.hedge.skipped").tag("client", client)
+                .description("预算不足未发出的对冲请求数量").register(meterRegistry);
+        Gauge.builder("llm.hedge.rate", this, advisor -> advisor.hedgeRate())
+                .tag("client", client)
+                .description("对冲请求占调用次数的比例").register(meterRegistry);
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        callCounter.increment();
+        deposit();
+        Duration delay = hedgeDelay(callLatency);
+        if (delay == null) {
+            // 样本不足时直接在调用线程上执行
+            long start = System.nanoTime();
+            ChatClientResponse response = callAdvisorChain.copy(this).nextCall(chatClientRequest);
+            callLatency.add(System.nanoTime() - start);
+            return response;
+        }
+
+        CompletionService<ChatClientResponse> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<ChatClientResponse>> futures = new ArrayList<>(2);
+        futures.add(completionService.submit(() -> attempt(chatClientRequest, callAdvisorChain)));
+        try {
+            Future<ChatClientResponse> done = completionService.poll(delay.toNanos(), TimeUnit.NANOSECONDS);
+            if (done == null && tryHedge(delay)) {
+                futures.add(completionService.submit(() -> attempt(chatClientRequest, callAdvisorChain)));
+            }
+            int remaining = futures.size();
+            while (true) {
+                if (done == null) {
+                    done = completionService.take();
+                }
+                try {
+                    ChatClientResponse response = done.get();
+                    if (done != futures.get(0)) {
+                        winCounter.increment();
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    // 其中一个请求失败时等待另一个
+                    if (--remaining == 0) {
+                        throw e.getCause() instanceof RuntimeException runtimeException
+                                ? runtimeException : new IllegalStateException(e.getCause());
+                    }
+                    done = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for model response", e);
+        } finally {
+            // 取消未完成的请求，中断其 HTTP 调用并释放并发名额
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private ChatClientResponse attempt(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        long start = System.nanoTime();
+        ChatClientResponse response = callAdvisorChain.copy(this).nextCall(chatClientRequest);
+        callLatency.add(System.nanoTime() - start);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        return Flux.defer(() -> {
+            callCounter.increment();
+            deposit();
+            Duration delay = hedgeDelay(firstChunkLatency);
+            if (delay == null) {
+                return attempt(chatClientRequest, streamAdvisorChain, null, null);
+            }
+            // 已发出的请求数量、失败的请求数量：对冲发出后，一个请求失败时继续等待另一个
+            AtomicInteger attempts = new AtomicInteger(1);
+            AtomicInteger failures = new AtomicInteger();
+            Flux<ChatClientResponse> primary = attempt(chatClientRequest, streamAdvisorChain, attempts, failures);
+            // 对冲请求在 boundedElastic 线程上发出，等待并发名额时不占用 parallel 线程
+            Flux<ChatClientResponse> hedge = Mono.delay(delay, Schedulers.boundedElastic()).flatMapMany(tick -> {
+                if (!tryHedge(delay)) {
+                    return Flux.never();
+                }
+                attempts.incrementAndGet();
+                AtomicBoolean first = new AtomicBoolean(true);
+                return attempt(chatClientRequest, streamAdvisorChain, attempts, failures)
+                        .doOnNext(response -> {
+                            if (first.compareAndSet(true, false)) {
+                                winCounter.increment();
+                            }
+                        });
+            });
+            // 先发出信号（片段或异常）的请求生效，另一个被取消
+            return Flux.firstWithSignal(primary, hedge);
+        });
+    }
+
+    /**
+     * 发出一次流式请求，首个片段到达时记录耗时
+     */
+    private Flux<ChatClientResponse> attempt(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain,
+                                             AtomicInteger attempts, AtomicInteger failures) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            Flux<ChatClientResponse> flux = streamAdvisorChain.copy(this).nextStream(chatClientRequest)
+                    .doOnNext(response -> {
+                        if (first.compareAndSet(true, false)) {
+                            firstChunkLatency.add(System.nanoTime() - start);
+                        }
+                    });
+            if (attempts == null) {
+                return flux;
+            }
+            return flux.onErrorResume(e -> failures.incrementAndGet() < attempts.get() ? Flux.never() : Flux.error(e));
+        });
+    }
+
+    /**
+     * 当前的对冲等待时间
+     * @param window 耗时统计
+     * @return 等待时间，样本不足时为 null
+     */
+    private Duration hedgeDelay(LatencyWindow window) {
+        if (window.size() < hedgingConfig.getMinSamples()) {
+            return null;
+        }
+        long delayNanos = window.percentile(hedgingConfig.getPercentile());
+        return Duration.ofNanos(Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(hedgingConfig.getMinDelayMs())));
+    }
+
+    /**
+     * 每次调用按比例累积对冲预算
+     */
+    private synchronized void deposit() {
+        budget = Math.min(hedgingConfig.getBudgetBurst(), budget + hedgingConfig.getBudgetRatio());
+    }
+
+    /**
+     * 消耗预算发出对冲，预算不足时放弃
+     * @param delay 已等待的时间
+     * @return 是否发出对冲
+     */
+    private boolean tryHedge(Duration delay) {
+        synchronized (this) {
+            if (budget < 1) {
+                skippedCounter.increment();
+                return false;
+            }
+            budget -= 1;
+        }
+        hedgeCounter.increment();
+        log.debug("模型调用 {}ms 未返回, 发出对冲请求, client: {}", delay.toMillis(), client);
+        return true;
+    }
+
+    private double hedgeRate() {
+        double calls = callCounter.count();
+        return calls == 0 ? 0 : hedgeCounter.count() / calls;
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName() + "-" + client;
+    }
+
+    @Override
+    public int getOrder() {
+        // 在响应缓存之后、ConcurrencyLimitAdvisor 之前执行
+        return 0;
+    }
+
+    /**
+     * 最近若干次调用的耗时（纳秒）
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        private LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        private synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized long percentile(double percentile) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.review.agent.config;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * 向量模型并发限制：向量化请求与对话模型共用 {@link AdaptiveConcurrencyLimiter} 的并发上限
+ */
+public class LimitedEmbeddingModel implements EmbeddingModel {
+
+    private static final String CLIENT = "embedding";
+
+    private final EmbeddingModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedEmbeddingModel(EmbeddingModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(CLIENT);
+        try {
+            EmbeddingResponse response = delegate.call(request);
+            permit.release(null);
+            return response;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(CLIENT);
+        try {
+            float[] embedding = delegate.embed(document);
+            permit.release(null);
+            return embedding;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        // 委托给原模型，避免默认实现发起一次向量化请求
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,328 @@
+package com.review.agent.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 模型响应缓存：以（模型、参数、系统提示词、用户内容）的哈希为 key，
+ * 相同请求直接返回缓存的响应。本地为有界 LRU + TTL，可选 Redis 作为多实例共享的二级缓存。
+ * 排在 TokenLoggerAdvisor 之前，命中时不会产生 token 记录
+ */
+@Slf4j
+public class LlmCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private static final String REDIS_KEY_PREFIX = "llm-cache:";
+
+    /**
+     * 请求参数：为 true 时不读取缓存，直接调用模型（如输出格式错误后的重试）
+     */
+    public static final String BYPASS_KEY = "llmCacheBypass";
+
+    /**
+     * 请求参数：{@link CacheCommit}，调用方校验响应后再决定写入或删除缓存
+     */
+    public static final String COMMIT_KEY = "llmCacheCommit";
+
+    private final String client;
+    private final LlmCacheConfig cacheConfig;
+    private final RedissonClient redissonClient;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, CachedResponse> localCache;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter savedTokenCounter;
+    private final Timer savedLatencyTimer;
+
+    public LlmCacheAdvisor(String client, LlmCacheConfig cacheConfig, RedissonClient redissonClient,
+                           ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.cacheConfig = cacheConfig;
+        this.redissonClient = redissonClient;
+        this.objectMapper = objectMapper;
+        int maxEntries = cacheConfig.getMaxEntries();
+        this.localCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        hitCounter = Counter.builder("llm.cache.requests").tag("client", client).tag("result", "hit")
+                .description("模型响应缓存命中次数").register(meterRegistry);
+        missCounter = Counter.builder("llm.cache.requests").tag("client", client).tag("result", "miss")
+                .description("模型响应缓存未命中次数").register(meterRegistry);
+        savedTokenCounter = Counter.builder("llm.cache.saved.tokens").tag("client", client)
+                .description("缓存命中节省的 token 数").register(meterRegistry);
+        savedLatencyTimer = Timer.builder("llm.cache.saved.latency").tag("client", client)
+                .description("缓存命中节省的模型调用耗时").register(meterRegistry);
+        Gauge.builder("llm.cache.hit.ratio", this, advisor -> advisor.hitRatio())
+                .tag("client", client)
+                .description("模型响应缓存命中率").register(meterRegistry);
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        String key = buildKey(chatClientRequest.prompt());
+        CacheCommit commit = bind(chatClientRequest, key);
+        CachedResponse cached = bypass(chatClientRequest) ? null : get(key);
+        if (cached != null) {
+            return hit(chatClientRequest, cached);
+        }
+
+        missCounter.increment();
+        long start = System.currentTimeMillis();
+        ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+        long latency = System.currentTimeMillis() - start;
+
+        ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse != null && chatResponse.getResult() != null && chatResponse.getResult().getOutput().getText() != null) {
+            Usage usage = chatResponse.getMetadata().getUsage();
+            long promptTokens = usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+            long completionTokens = usage == null || usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+            store(key, commit, new CachedResponse(chatResponse.getResult().getOutput().getText(), promptTokens, completionTokens,
+                    latency, System.currentTimeMillis()));
+        }
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        String key = buildKey(chatClientRequest.prompt());
+        CacheCommit commit = bind(chatClientRequest, key);
+        CachedResponse cached = bypass(chatClientRequest) ? null : get(key);
+        if (cached != null) {
+            return Flux.just(hit(chatClientRequest, cached));
+        }
+
+        // 未命中时拼接增量输出，完整结束的流才写入缓存
+        missCounter.increment();
+        long start = System.currentTimeMillis();
+        StringBuilder content = new StringBuilder();
+        AtomicReference<Usage> usageRef = new AtomicReference<>();
+        return streamAdvisorChain.nextStream(chatClientRequest)
+                .doOnNext(response -> {
+                    ChatResponse chatResponse = response.chatResponse();
+                    if (chatResponse == null) {
+                        return;
+                    }
+                    if (chatResponse.getResult() != null && chatResponse.getResult().getOutput().getText() != null) {
+                        content.append(chatResponse.getResult().getOutput().getText());
+                    }
+                    if (chatResponse.getMetadata().getUsage() != null) {
+                        usageRef.set(chatResponse.getMetadata().getUsage());
+                    }
+                })
+                .doOnComplete(() -> {
+                    if (content.isEmpty()) {
+                        return;
+                    }
+                    Usage usage = usageRef.get();
+                    long promptTokens = usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+                    long completionTokens = usage == null || usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+                    store(key, commit, new CachedResponse(content.toString(), promptTokens, completionTokens,
+                            System.currentTimeMillis() - start, System.currentTimeMillis()));
+                });
+    }
+
+    private boolean bypass(ChatClientRequest chatClientRequest) {
+        return Boolean.TRUE.equals(chatClientRequest.context().get(BYPASS_KEY));
+    }
+
+    /**
+     * 将缓存 key 绑定到调用方传入的 {@link CacheCommit}，调用方可在响应无效时删除缓存
+     */
+    private CacheCommit bind(ChatClientRequest chatClientRequest, String key) {
+        if (chatClientRequest.context().get(COMMIT_KEY) instanceof CacheCommit commit) {
+            commit.evict = () -> evict(key);
+            return commit;
+        }
+        return null;
+    }
+
+    /**
+     * 写入缓存；调用方传入 {@link CacheCommit} 时延迟到调用方确认响应有效后再写入
+     */
+    private void store(String key, CacheCommit commit, CachedResponse cached) {
+        if (commit == null) {
+            put(key, cached);
+        } else {
+            commit.commit = () -> put(key, cached);
+        }
+    }
+
+    private ChatClientResponse hit(ChatClientRequest chatClientRequest, CachedResponse cached) {
+        hitCounter.increment();
+        savedTokenCounter.increment(cached.promptTokens() + cached.completionTokens());
+        savedLatencyTimer.record(Duration.ofMillis(cached.latencyMillis()));
+        log.debug("模型响应缓存命中, client: {}", client);
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage(cached.content()))));
+        return ChatClientResponse.builder()
+                .chatResponse(chatResponse)
+                .context(chatClientRequest.context())
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName() + "-" + client;
+    }
+
+    @Override
+    public int getOrder() {
+        // 在 TokenLoggerAdvisor 外层执行
+        return -1;
+    }
+
+    /**
+     * 缓存 key：模型参数与全部消息内容的哈希
+     */
+    private String buildKey(Prompt prompt) {
+        StringBuilder sb = new StringBuilder(client);
+        ChatOptions options = prompt.getOptions();
+        if (options != null) {
+            sb.append('|').append(options.getModel())
+                    .append('|').append(options.getTemperature())
+                    .append('|').append(options.getTopP())
+                    .append('|').append(options.getMaxTokens());
+        }
+        for (Message message : prompt.getInstructions()) {
+            sb.append('|').append(message.getMessageType())
+                    .append(':').append(DigestUtils.md5DigestAsHex(String.valueOf(message.getText()).getBytes(StandardCharsets.UTF_8)));
+        }
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CachedResponse get(String key) {
+        long ttlMillis = Duration.ofMinutes(cacheConfig.getTtlMinutes()).toMillis();
+        synchronized (localCache) {
+            CachedResponse cached = localCache.get(key);
+            if (cached != null) {
+                if (System.currentTimeMillis() - cached.createdTime() <= ttlMillis) {
+                    return cached;
+                }
+                localCache.remove(key);
+            }
+        }
+        if (!cacheConfig.isRedisEnabled()) {
+            return null;
+        }
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(REDIS_KEY_PREFIX + key, StringCodec.INSTANCE);
+            String json = bucket.get();
+            if (json == null) {
+                return null;
+            }
+            CachedResponse cached = objectMapper.readValue(json, CachedResponse.class);
+            // 回填本地缓存，按本地 TTL 重新计时
+            CachedResponse local = new CachedResponse(cached.content(), cached.promptTokens(), cached.completionTokens(),
+                    cached.latencyMillis(), System.currentTimeMillis());
+            synchronized (localCache) {
+                localCache.put(key, local);
+            }
+            return local;
+        } catch (Exception e) {
+            log.warn("读取 Redis 模型响应缓存失败, client: {}", client, e);
+            return null;
+        }
+    }
+
+    private void put(String key, CachedResponse cached) {
+        synchronized (localCache) {
+            localCache.put(key, cached);
+        }
+        if (!cacheConfig.isRedisEnabled()) {
+            return;
+        }
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(REDIS_KEY_PREFIX + key, StringCodec.INSTANCE);
+            bucket.set(objectMapper.writeValueAsString(cached), cacheConfig.getRedisTtlMinutes(), TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("写入 Redis 模型响应缓存失败, client: {}", client, e);
+        }
+    }
+
+    private void evict(String key) {
+        synchronized (localCache) {
+            localCache.remove(key);
+        }
+        if (!cacheConfig.isRedisEnabled()) {
+            return;
+        }
+        try {
+            redissonClient.getBucket(REDIS_KEY_PREFIX + key, StringCodec.INSTANCE).delete();
+        } catch (Exception e) {
+            log.warn("删除 Redis 模型响应缓存失败, client: {}", client, e);
+        }
+    }
+
+    private double hitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    /**
+     * 缓存的模型响应
+     * @param content 响应文本
+     * @param promptTokens 原调用的输入 token 数
+     * @param completionTokens 原调用的输出 token 数
+     * @param latencyMillis 原调用耗时
+     * @param createdTime 写入时间
+     */
+    public record CachedResponse(String content, long promptTokens, long completionTokens, long latencyMillis, long createdTime) {
+    }
+
+    /**
+     * 延迟写入的缓存：模型响应经调用方校验有效后 {@link #commit()} 写入，无效时 {@link #evict()} 删除（含此前缓存的同一响应）
+     */
+    public static final class CacheCommit {
+        private volatile Runnable commit;
+        private volatile Runnable evict;
+
+        public void commit() {
+            Runnable action = commit;
+            if (action != null) {
+                action.run();
+            }
+        }
+
+        public void evict() {
+            commit = null;
+            Runnable action = evict;
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+}
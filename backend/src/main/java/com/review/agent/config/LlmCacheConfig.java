@@ -0,0 +1,51 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型响应缓存配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.llm-cache")
+public class LlmCacheConfig {
+
+    /**
+     * 本地缓存最大条目数
+     */
+    private int maxEntries = 2000;
+
+    /**
+     * 本地缓存过期时间（分钟）
+     */
+    private long ttlMinutes = 60;
+
+    /**
+     * 是否启用 Redis 共享缓存
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * Redis 缓存过期时间（分钟）
+     */
+    private long redisTtlMinutes = 1440;
+
+    /**
+     * 每个 ChatClient 是否启用缓存，key 为客户端名称（analysis / classify / extract）
+     */
+    private Map<String, Boolean> clients = new HashMap<>();
+
+    /**
+     * 判断客户端是否启用缓存
+     * @param client 客户端名称
+     * @return 是否启用
+     */
+    public boolean isEnabled(String client) {
+        return clients.getOrDefault(client, false);
+    }
+}
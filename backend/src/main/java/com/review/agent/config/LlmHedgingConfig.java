@@ -0,0 +1,88 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型调用对冲请求配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.hedging")
+public class LlmHedgingConfig {
+
+    /**
+     * 是否启用对冲请求
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每个 ChatClient 是否启用对冲，key 为客户端名称（analysis / classify / extract）
+     */
+    private Map<String, Boolean> clients = new HashMap<>();
+
+    /**
+     * 调用超过近期耗时的该分位数仍未返回时发出对冲请求
+     */
+    private double percentile = 0.95;
+
+    /**
+     * 统计耗时的最近调用数量
+     */
+    private int windowSize = 200;
+
+    /**
+     * 样本数量达到该值后才开始对冲
+     */
+    private int minSamples = 20;
+
+    /**
+     * 对冲等待时间的下限（毫秒）
+     */
+    private long minDelayMs = 1000;
+
+    /**
+     * 对冲请求数量占调用数量的最大比例
+     */
+    private double budgetRatio = 0.05;
+
+    /**
+     * 对冲预算最多累积的请求数量，限制突发对冲
+     */
+    private int budgetBurst = 10;
+
+    /**
+     * 非流式调用的对冲线程数
+     */
+    private int executorThreads = 64;
+
+    /**
+     * 判断客户端是否启用对冲
+     * @param client 客户端名称
+     * @return 是否启用
+     */
+    public boolean isEnabled(String client) {
+        return enabled && clients.getOrDefault(client, false);
+    }
+
+    /**
+     * 对冲线程池，非流式调用的原请求和对冲请求都在该线程池中执行，调用线程等待先返回的结果
+     */
+    @Bean(name = "hedgeTaskExecutor")
+    public ThreadPoolTaskExecutor hedgeTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(executorThreads);
+        executor.setMaxPoolSize(executorThreads);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("LlmHedge-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
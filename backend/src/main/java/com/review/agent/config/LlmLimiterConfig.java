@@ -0,0 +1,54 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型调用自适应并发限制配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.limiter")
+public class LlmLimiterConfig {
+
+    /**
+     * 是否启用自适应并发限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 8;
+
+    /**
+     * 并发上限的下限
+     */
+    private int minLimit = 2;
+
+    /**
+     * 并发上限的上限
+     */
+    private int maxLimit = 64;
+
+    /**
+     * 限流、超时或延迟突增时并发上限乘以该比例
+     */
+    private double backoffRatio = 0.7;
+
+    /**
+     * 调用耗时超过基准耗时的该倍数时视为延迟突增
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * 基准耗时的平滑系数，越小基准变化越慢
+     */
+    private double latencySmoothing = 0.05;
+
+    /**
+     * 等待并发名额的最长时间（秒），超过后拒绝调用
+     */
+    private int acquireTimeoutSeconds = 120;
+}
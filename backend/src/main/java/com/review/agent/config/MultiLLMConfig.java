@@ -3,20 +3,31 @@ package com.review.agent.config;
 import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.redisson.api.RedissonClient;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class MultiLLMConfig {
 
     // 模型配置常量 - 默认使用百炼模型
     private static final String CHAT_MODEL = "qwen-plus";
-    private static final String ANALYSIS_MODEL = "qwen-plus";
-    private static final String CLASSIFY_MODEL = "qwen-plus";
-    private static final String EXTRACT_MODEL = "qwen-plus";
+    public static final String ANALYSIS_MODEL = "qwen-plus";
+    public static final String CLASSIFY_MODEL = "qwen-plus";
+    public static final String EXTRACT_MODEL = "qwen-plus";
+    // 本地模型（Ollama）与近邻分类的会话任务并发分组，不受自适应并发限制
+    public static final String LOCAL_MODEL = "ollama";
 
     // 温度参数常量 - 控制模型输出的随机性
     private static final double CHAT_TEMPERATURE = 0.6;
@@ -30,6 +41,24 @@ public class MultiLLMConfig {
     private static final int CLASSIFY_MAX_TOKENS = 1000;
     private static final int EXTRACT_MAX_TOKENS = 1000;
 
+    @Resource
+    private TokenLoggerAdvisor tokenLoggerAdvisor;
+    @Resource
+    private CancellationAdvisor cancellationAdvisor;
+    @Resource
+    private LlmCacheConfig llmCacheConfig;
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private MeterRegistry meterRegistry;
+    @Resource
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    @Resource
+    private LlmHedgingConfig hedgingConfig;
+    @Resource(name = "hedgeTaskExecutor")
+    private ThreadPoolTaskExecutor hedgeTaskExecutor;
 
     @Bean("chatModel")
     public DashScopeChatModel chatModel(DashScopeApi dashScopeApi) {
@@ -103,7 +132,7 @@ public class MultiLLMConfig {
      */
     @Bean
     public ChatClient ollamachatClient(@Qualifier("ollamaChatModel") OllamaChatModel ollamaChatModel) {
-        return ChatClient.builder(ollamaChatModel).defaultAdvisors(new TokenLoggerAdvisor()).build();
+        return ChatClient.builder(ollamaChatModel).defaultAdvisors(cancellationAdvisor, tokenLoggerAdvisor).build();
     }
 
     /**
@@ -111,7 +140,7 @@ public class MultiLLMConfig {
      */
     @Bean("analysisChatClient")
     public ChatClient analysisChatClient(@Qualifier("analysisChatModel") DashScopeChatModel analysisChatModel) {
-        return ChatClient.builder(analysisChatModel).defaultAdvisors(new TokenLoggerAdvisor()).build();
+        return ChatClient.builder(analysisChatModel).defaultAdvisors(buildAdvisors("analysis")).build();
     }
 
     /**
@@ -119,7 +148,7 @@ public class MultiLLMConfig {
      */
     @Bean("classifyChatClient")
     public ChatClient classifyChatClient(@Qualifier("classifyChatModel") DashScopeChatModel classifyChatModel) {
-        return ChatClient.builder(classifyChatModel).defaultAdvisors(new TokenLoggerAdvisor()).build();
+        return ChatClient.builder(classifyChatModel).defaultAdvisors(buildAdvisors("classify")).build();
     }
 
     /**
@@ -127,6 +156,27 @@ public class MultiLLMConfig {
      */
     @Bean("extractChatClient")
     public ChatClient imageChatClient(@Qualifier("extractChatModel") DashScopeChatModel imageChatModel) {
-        return ChatClient.builder(imageChatModel).defaultAdvisors(new TokenLoggerAdvisor()).build();
+        return ChatClient.builder(imageChatModel).defaultAdvisors(buildAdvisors("extract")).build();
+    }
+
+    /**
+     * 构建客户端的 Advisor 列表：取消检查、按配置启用的响应缓存和对冲请求、自适应并发限制、token 统计
+     * @param client 客户端名称
+     * @return Advisor 列表
+     */
+    private List<Advisor> buildAdvisors(String client) {
+        List<Advisor> advisorList = new ArrayList<>();
+        advisorList.add(cancellationAdvisor);
+        if (llmCacheConfig.isEnabled(client)) {
+            advisorList.add(new LlmCacheAdvisor(client, llmCacheConfig, redissonClient, objectMapper, meterRegistry));
+        }
+        if (hedgingConfig.isEnabled(client)) {
+            advisorList.add(new HedgingAdvisor(client, hedgingConfig, hedgeTaskExecutor, meterRegistry));
+        }
+        if (concurrencyLimiter.isEnabled()) {
+            advisorList.add(new ConcurrencyLimitAdvisor(client, concurrencyLimiter));
+        }
+        advisorList.add(tokenLoggerAdvisor);
+        return advisorList;
     }
 }
@@ -0,0 +1,79 @@
+package com.review.agent.config;
+
+import com.review.agent.graph.segment.LlmSessionSegmenter;
+import com.review.agent.graph.segment.LocalSessionSegmenter;
+import com.review.agent.graph.segment.SessionSegmenter;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话拆分配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.segment")
+public class SessionSegmentConfig {
+
+    public static final String STRATEGY_LOCAL = "local";
+    public static final String STRATEGY_LLM = "llm";
+
+    /**
+     * 拆分策略：local（本地词汇相似度，仅模糊边界调用模型）/ llm（整个文件交给模型拆分）
+     */
+    private String strategy = STRATEGY_LOCAL;
+
+    /**
+     * 相邻记录相似度不低于该值时合并为同一会话
+     */
+    private double mergeThreshold = 0.3;
+
+    /**
+     * 相邻记录相似度低于该值时拆分为不同会话
+     */
+    private double splitThreshold = 0.08;
+
+    /**
+     * 记录有效词数少于该值时相似度不可靠，视为模糊边界
+     */
+    private int minTokens = 6;
+
+    /**
+     * 模糊边界是否交给模型判断，关闭时按阈值中点判断
+     */
+    private boolean llmFallback = true;
+
+    /**
+     * 模糊边界判断时每条记录截取的最大字符数
+     */
+    private int boundaryMaxChars = 1500;
+
+    /**
+     * 模型拆分时文件超过单个窗口是否分窗口并行提取
+     */
+    private boolean windowEnabled = true;
+
+    /**
+     * 单个窗口的最大输入 token 数
+     */
+    private int windowMaxTokens = 6000;
+
+    /**
+     * 单个窗口的最大记录数，避免返回的会话列表超出输出 token 上限
+     */
+    private int windowMaxRecords = 40;
+
+    /**
+     * 相邻窗口重叠的记录数，用于衔接跨窗口的会话（至少为1）
+     */
+    private int windowOverlapRecords = 2;
+
+    /**
+     * 当前生效的会话拆分策略
+     */
+    @Bean(name = "sessionSegmenter")
+    public SessionSegmenter sessionSegmenter(LocalSessionSegmenter localSessionSegmenter, LlmSessionSegmenter llmSessionSegmenter) {
+        return STRATEGY_LLM.equals(strategy) ? llmSessionSegmenter : localSessionSegmenter;
+    }
+}
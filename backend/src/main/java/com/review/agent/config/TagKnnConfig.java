@@ -0,0 +1,55 @@
+package com.review.agent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量近邻标签分类配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "analysis.tag-knn")
+public class TagKnnConfig {
+
+    /**
+     * 是否在调用模型分类前先按相似的历史会话投票分类
+     */
+    private boolean enabled = false;
+
+    /**
+     * 参与投票的近邻数量
+     */
+    private int topK = 10;
+
+    /**
+     * 近邻的相似度下限，低于该值的历史会话不参与投票（以问题描述查询，与存储的向量为同类文本）
+     */
+    private double similarityThreshold = 0.85;
+
+    /**
+     * 以会话内容查询时（分类先于分析，会话还没有问题描述）的相似度下限。
+     * 会话原文与存储的问题描述不是同类文本，相似度整体偏低，需按对比接口的结果校准
+     */
+    private double contentSimilarityThreshold = 0.6;
+
+    /**
+     * 至少有该数量的近邻才采用投票结果
+     */
+    private int minNeighbors = 3;
+
+    /**
+     * 得票最多的主标签占全部票数（按相似度加权）的比例不低于该值时采用
+     */
+    private double minAgreement = 0.7;
+
+    /**
+     * 子标签在投给该主标签的票数中所占比例不低于该值时采用
+     */
+    private double subTagAgreement = 0.5;
+
+    /**
+     * 以会话内容查询时截取的最大字符数
+     */
+    private int maxQueryChars = 2000;
+}
@@ -1,5 +1,11 @@
 package com.review.agent.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.review.agent.graph.support.GraphNodeContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
@@ -10,33 +16,144 @@ import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
 import org.springframework.ai.chat.metadata.ChatResponseMetadata;
 import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StopWatch;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Component
 public class TokenLoggerAdvisor implements CallAdvisor, StreamAdvisor {
+    @Resource
+    private TokenUsageTracker tokenUsageTracker;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private MeterRegistry meterRegistry;
 
     @Override
     public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        ChatClientResponse advisedResponse = callAdvisorChain.nextCall(chatClientRequest);
-        stopWatch.stop();
+        long start = System.nanoTime();
+        ChatClientResponse advisedResponse;
+        try {
+            advisedResponse = callAdvisorChain.nextCall(chatClientRequest);
+        } catch (RuntimeException e) {
+            recordCall(chatClientRequest, System.nanoTime() - start, "failure", e);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
         ChatResponse chatResponse = Optional.ofNullable(advisedResponse.chatResponse())
                 .orElseThrow(() -> new IllegalArgumentException("chatResponse is null"));
         ChatResponseMetadata metadata = chatResponse.getMetadata();
         Usage usage = metadata.getUsage();
-        log.info("本次模型调用 usage: {}, 耗时: {}ms", usage, stopWatch.getTotalTimeMillis());
+        long cachedTokens = cachedTokens(usage);
+        log.info("本次模型调用 usage: {}, 缓存命中 token: {}, 耗时: {}ms", usage, cachedTokens, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        recordCall(chatClientRequest, elapsed, "success", null);
+        record(chatClientRequest, usage, cachedTokens);
         return advisedResponse;
     }
 
     @Override
     public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
-        return null;
+        // 流式响应的 usage 为累计值，取最后一次出现的
+        long start = System.nanoTime();
+        AtomicReference<Usage> usageRef = new AtomicReference<>();
+        AtomicReference<Throwable> errorRef = new AtomicReference<>();
+        return streamAdvisorChain.nextStream(chatClientRequest)
+                .doOnNext(response -> Optional.ofNullable(response.chatResponse())
+                        .map(chatResponse -> chatResponse.getMetadata().getUsage())
+                        .ifPresent(usageRef::set))
+                .doOnError(errorRef::set)
+                .doFinally(signal -> {
+                    long elapsed = System.nanoTime() - start;
+                    Usage usage = usageRef.get();
+                    long cachedTokens = cachedTokens(usage);
+                    log.info("本次模型流式调用 usage: {}, 缓存命中 token: {}, 耗时: {}ms, 结束: {}", usage, cachedTokens,
+                            TimeUnit.NANOSECONDS.toMillis(elapsed), signal);
+                    // 被取消的流（如对冲请求中落后的一方）单独统计
+                    String result = errorRef.get() != null ? "failure" : signal == SignalType.CANCEL ? "cancelled" : "success";
+                    recordCall(chatClientRequest, elapsed, result, errorRef.get());
+                    record(chatClientRequest, usage, cachedTokens);
+                });
+    }
+
+    /**
+     * 按模型、节点记录调用耗时（含调用次数），失败时按异常类型计数
+     */
+    private void recordCall(ChatClientRequest chatClientRequest, long elapsedNanos, String result, Throwable error) {
+        String model = model(chatClientRequest);
+        String node = node(chatClientRequest);
+        Timer.builder("llm.call.latency")
+                .description("模型调用耗时")
+                .tag("model", model)
+                .tag("node", node)
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (error != null) {
+            meterRegistry.counter("llm.call.failures", "model", model, "node", node,
+                    "type", error.getClass().getSimpleName()).increment();
+        }
+    }
+
+    /**
+     * 记录用量：按统计 key 累计，按模型、节点统计输入输出 token 以及命中、未命中前缀缓存的输入 token
+     */
+    private void record(ChatClientRequest chatClientRequest, Usage usage, long cachedTokens) {
+        if (usage == null) {
+            return;
+        }
+        long promptTokens = usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+        long completionTokens = usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+        String model = model(chatClientRequest);
+        String node = node(chatClientRequest);
+        meterRegistry.counter("llm.tokens", "model", model, "node", node, "type", "input").increment(promptTokens);
+        meterRegistry.counter("llm.tokens", "model", model, "node", node, "type", "output").increment(completionTokens);
+        meterRegistry.counter("llm.prompt.tokens", "model", model, "node", node, "cache", "hit").increment(cachedTokens);
+        meterRegistry.counter("llm.prompt.tokens", "model", model, "node", node, "cache", "miss")
+                .increment(Math.max(0, promptTokens - cachedTokens));
+
+        Object usageKey = chatClientRequest.context().get(TokenUsageTracker.USAGE_KEY);
+        if (usageKey != null) {
+            tokenUsageTracker.record(usageKey.toString(), usage.getPromptTokens(), usage.getCompletionTokens(), cachedTokens);
+        }
+    }
+
+    private String model(ChatClientRequest chatClientRequest) {
+        ChatOptions options = chatClientRequest.prompt().getOptions();
+        return options == null || options.getModel() == null ? "unknown" : options.getModel();
+    }
+
+    private String node(ChatClientRequest chatClientRequest) {
+        Object node = chatClientRequest.context().get(GraphNodeContext.NODE_KEY);
+        return node == null ? GraphNodeContext.NONE : node.toString();
+    }
+
+    /**
+     * 从模型原始用量中读取命中前缀缓存的输入 token 数（DashScope 为 prompt_tokens_details.cached_tokens），
+     * 不支持缓存的模型为 0
+     */
+    private long cachedTokens(Usage usage) {
+        Object nativeUsage = usage == null ? null : usage.getNativeUsage();
+        if (nativeUsage == null) {
+            return 0;
+        }
+        try {
+            JsonNode node = objectMapper.valueToTree(nativeUsage);
+            JsonNode cached = node.findValue("cached_tokens");
+            if (cached == null) {
+                cached = node.findValue("cachedTokens");
+            }
+            return cached == null ? 0 : cached.asLong();
+        } catch (IllegalArgumentException e) {
+            log.debug("无法解析模型原始用量: {}", nativeUsage.getClass().getName());
+            return 0;
+        }
     }
 
     @Override
@@ -46,6 +163,7 @@ public class TokenLoggerAdvisor implements CallAdvisor, StreamAdvisor {
 
     @Override
     public int getOrder() {
-        return 0;
+        // 在 ConcurrencyLimitAdvisor 内层执行，对冲请求的 token 也计入
+        return 2;
     }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.review.agent.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按调用方指定的 key 累计模型调用次数和 token 用量（如一次分析任务、一次基准测试）
+ */
+@Component
+public class TokenUsageTracker {
+
+    /**
+     * ChatClient 请求上下文中的用量统计 key
+     */
+    public static final String USAGE_KEY = "usageKey";
+
+    private final Map<String, Counter> counterMap = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次模型调用
+     * @param key 统计 key，为空时忽略
+     * @param promptTokens 输入 token 数
+     * @param completionTokens 输出 token 数
+     * @param cachedTokens 输入中命中模型前缀缓存的 token 数
+     */
+    public void record(String key, Integer promptTokens, Integer completionTokens, long cachedTokens) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        Counter counter = counterMap.computeIfAbsent(key, k -> new Counter());
+        counter.calls.increment();
+        counter.promptTokens.add(promptTokens == null ? 0 : promptTokens);
+        counter.completionTokens.add(completionTokens == null ? 0 : completionTokens);
+        counter.cachedTokens.add(cachedTokens);
+    }
+
+    /**
+     * 取出并清除指定 key 的用量
+     * @param key 统计 key
+     * @return 累计用量
+     */
+    public TokenUsage remove(String key) {
+        Counter counter = counterMap.remove(key);
+        if (counter == null) {
+            return new TokenUsage(0, 0, 0, 0);
+        }
+        return new TokenUsage(counter.calls.sum(), counter.promptTokens.sum(), counter.completionTokens.sum(),
+                counter.cachedTokens.sum());
+    }
+
+    /**
+     * 累计用量
+     * @param calls 调用次数
+     * @param promptTokens 输入 token 数
+     * @param completionTokens 输出 token 数
+     * @param cachedTokens 输入中命中前缀缓存的 token 数（包含在 promptTokens 中）
+     */
+    public record TokenUsage(long calls, long promptTokens, long completionTokens, long cachedTokens) {
+
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    private static class Counter {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder cachedTokens = new LongAdder();
+    }
+}
@@ -1,6 +1,10 @@
 package com.review.agent.config;
 
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.redis.RedisVectorStore;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,14 +24,49 @@ public class VectorStoreConfig {
     @Value("${spring.data.redis.port:6379}")
     private int port;
 
+    /**
+     * 单次向量化请求的最大 token 数
+     */
+    @Value("${analysis.vector.max-input-tokens:8191}")
+    private int maxInputTokens;
+
+    /**
+     * token 估算的预留比例
+     */
+    @Value("${analysis.vector.reserve-percentage:0.1}")
+    private double reservePercentage;
+
+    /**
+     * 单次向量化请求的最大文档数（DashScope text-embedding-v3 为 10）
+     */
+    @Value("${analysis.vector.max-batch-size:10}")
+    private int maxBatchSize;
 
     @Bean
     public JedisPooled jedisPooled() {
         return new JedisPooled(host, port);
     }
 
+    /**
+     * 向量化分批策略：先按 token 数分批，再按服务商的单次文档数上限拆分，使请求次数尽量少
+     */
+    @Bean
+    public BatchingStrategy batchingStrategy() {
+        TokenCountBatchingStrategy tokenCountBatchingStrategy = new TokenCountBatchingStrategy(
+                EncodingType.CL100K_BASE, maxInputTokens, reservePercentage);
+        return documents -> {
+            List<List<Document>> batchList = new ArrayList<>();
+            for (List<Document> batch : tokenCountBatchingStrategy.batch(documents)) {
+                for (int i = 0; i < batch.size(); i += maxBatchSize) {
+                    batchList.add(batch.subList(i, Math.min(i + maxBatchSize, batch.size())));
+                }
+            }
+            return batchList;
+        };
+    }
+
     @Bean
-    public VectorStore vectorStore(JedisPooled jedisPooled, EmbeddingModel embeddingModel) {
+    public VectorStore vectorStore(JedisPooled jedisPooled, EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy) {
         List<RedisVectorStore.MetadataField> metadataFieldList = new ArrayList<>();
         metadataFieldList.add(RedisVectorStore.MetadataField.tag("userId"));
         metadataFieldList.add(RedisVectorStore.MetadataField.text("response"));
@@ -37,7 +76,7 @@ public class VectorStoreConfig {
 //                .prefix(prefix)                  // Optional: defaults to "embedding:"
                 .metadataFields(metadataFieldList)
                 .initializeSchema(true)                   // Optional: defaults to false
-//                .batchingStrategy(new TokenCountBatchingStrategy()) // Optional: defaults to TokenCountBatchingStrategy
+                .batchingStrategy(batchingStrategy)
                 .build();
     }
 }
\ No newline at end of file
@@ -4,8 +4,12 @@ import com.review.agent.common.exception.BaseResponse;
 import com.review.agent.common.utils.ResultUtil;
 import com.review.agent.entity.pojo.AnalysisResult;
 import com.review.agent.entity.request.AnalysisResultRequest;
+import com.review.agent.entity.vo.AnalysisBatchVo;
+import com.review.agent.entity.vo.AnalysisJobVo;
 import com.review.agent.entity.vo.AnalysisResultVo;
 import com.review.agent.entity.vo.AnalysisTagVo;
+import com.review.agent.service.AnalysisBatchService;
+import com.review.agent.service.AnalysisJobService;
 import com.review.agent.service.AnalysisService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +29,10 @@ public class AnalysisController {
 
     @Resource
     private AnalysisService analysisService;
+    @Resource
+    private AnalysisJobService analysisJobService;
+    @Resource
+    private AnalysisBatchService analysisBatchService;
 
     /**
      * 分页查询分析结果
@@ -61,12 +69,77 @@ public class AnalysisController {
     }
 
     /**
-     * 开始分析
+     * 开始分析（加入分析队列）
+     * @return 分析任务ID
      */
     @GetMapping("/start")
-    public BaseResponse<?> startAnalysis(@RequestHeader("userId") Long userId, @RequestParam Long fileId) {
-        analysisService.startAnalysis(userId, fileId);
-        return ResultUtil.success("analysis success!");
+    public BaseResponse<Long> startAnalysis(@RequestHeader("userId") Long userId, @RequestParam Long fileId) {
+        return ResultUtil.success(analysisService.startAnalysis(userId, fileId));
+    }
+
+    /**
+     * 批量分析所有待分析文件（未处理 / 已更新）
+     * @param userId 用户ID
+     * @param allUsers 是否分析所有用户的文件（需开启 analysis.batch.allow-all-users）
+     * @return 批次进度
+     */
+    @PostMapping("/batch/start")
+    public BaseResponse<AnalysisBatchVo> startBatch(@RequestHeader("userId") Long userId, @RequestParam(defaultValue = "false") boolean allUsers) {
+        return ResultUtil.success(analysisBatchService.startBatch(userId, allUsers));
+    }
+
+    /**
+     * 查询批量分析进度与吞吐
+     * @param userId 用户ID
+     * @param batchId 批次ID
+     * @return 批次进度
+     */
+    @GetMapping("/batch")
+    public BaseResponse<AnalysisBatchVo> getBatch(@RequestHeader("userId") Long userId, @RequestParam String batchId) {
+        return ResultUtil.success(analysisBatchService.getBatch(userId, batchId));
+    }
+
+    /**
+     * 查询分析任务状态
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @GetMapping("/job")
+    public BaseResponse<AnalysisJobVo> getJob(@RequestHeader("userId") Long userId, @RequestParam Long jobId) {
+        return ResultUtil.success(analysisJobService.getJob(userId, jobId));
+    }
+
+    /**
+     * 恢复失败的分析任务，从上次完成的节点 / 会话继续执行
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @PostMapping("/job/resume")
+    public BaseResponse<AnalysisJobVo> resumeJob(@RequestHeader("userId") Long userId, @RequestParam Long jobId) {
+        return ResultUtil.success(analysisJobService.resume(userId, jobId));
+    }
+
+    /**
+     * 取消排队中或执行中的分析任务，执行中的模型调用会被中断
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @PostMapping("/job/cancel")
+    public BaseResponse<AnalysisJobVo> cancelJob(@RequestHeader("userId") Long userId, @RequestParam Long jobId) {
+        return ResultUtil.success(analysisJobService.cancel(userId, jobId));
+    }
+
+    /**
+     * 查询用户的分析任务列表
+     * @param userId 用户ID
+     * @return 任务列表
+     */
+    @GetMapping("/job/list")
+    public BaseResponse<List<AnalysisJobVo>> listJob(@RequestHeader("userId") Long userId) {
+        return ResultUtil.success(analysisJobService.listJob(userId));
     }
 
     /**
@@ -0,0 +1,68 @@
+package com.review.agent.controller;
+
+import com.review.agent.common.exception.BaseResponse;
+import com.review.agent.common.utils.ResultUtil;
+import com.review.agent.entity.vo.GraphBenchmarkVo;
+import com.review.agent.entity.vo.TagKnnBenchmarkVo;
+import com.review.agent.entity.vo.VectorBenchmarkVo;
+import com.review.agent.service.AnalysisBenchmarkService;
+import com.review.agent.service.TagKnnBenchmarkService;
+import com.review.agent.service.VectorBenchmarkService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 性能对比接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/benchmark")
+public class BenchmarkController {
+
+    @Resource
+    private AnalysisBenchmarkService analysisBenchmarkService;
+    @Resource
+    private VectorBenchmarkService vectorBenchmarkService;
+    @Resource
+    private TagKnnBenchmarkService tagKnnBenchmarkService;
+
+    /**
+     * 对比标准模式与一体化模式的分析工作流（结果不落库）
+     * @param fileId 文件ID
+     * @param userId 用户ID
+     * @return 两种模式的耗时与 token 消耗
+     */
+    @GetMapping("/graph")
+    public BaseResponse<List<GraphBenchmarkVo>> compareGraph(@RequestParam("fileId") Long fileId, @RequestHeader("userId") Long userId) {
+        return ResultUtil.success(analysisBenchmarkService.compareGraph(userId, fileId));
+    }
+
+    /**
+     * 对比逐个写入与批量写入向量数据库的吞吐量（测试文档写入后立即删除）
+     * @param count 文档数量
+     * @param userId 用户ID
+     * @return 两种方式的耗时与每秒写入文档数
+     */
+    @GetMapping("/vector")
+    public BaseResponse<List<VectorBenchmarkVo>> compareVectorInsert(@RequestParam(value = "count", defaultValue = "50") Integer count,
+                                                                     @RequestHeader("userId") Long userId) {
+        return ResultUtil.success(vectorBenchmarkService.compareInsert(userId, count));
+    }
+
+    /**
+     * 用历史会话对比近邻标签分类与模型分类的一致率（只调用向量模型、不修改数据）
+     * @param count 最多对比的会话数量
+     * @param byContent 是否按会话内容查询（默认按问题描述查询）
+     * @param userId 用户ID
+     * @return 覆盖率与一致率
+     */
+    @GetMapping("/tag-knn")
+    public BaseResponse<TagKnnBenchmarkVo> compareTagKnn(@RequestParam(value = "count", defaultValue = "100") Integer count,
+                                                         @RequestParam(value = "byContent", defaultValue = "false") Boolean byContent,
+                                                         @RequestHeader("userId") Long userId) {
+        return ResultUtil.success(tagKnnBenchmarkService.compare(userId, count, byContent));
+    }
+}
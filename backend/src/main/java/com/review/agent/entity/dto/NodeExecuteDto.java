@@ -15,5 +15,21 @@ public class NodeExecuteDto {
     private String subTagId;
     private String subTagName;
     private String recommends;
+    /**
+     * 标签分类置信度（0~1）
+     */
+    private Double confidence;
     private Integer status;
+    /**
+     * 会话指纹（规范化内容 + 提示词/模型版本）
+     */
+    private String fingerprint;
+    /**
+     * 是否复用了已有的分析结果（复用时跳过分类与分析）
+     */
+    private Boolean reused;
+    /**
+     * 已保存的分析结果ID（会话分析完成后立即保存）
+     */
+    private Long analysisId;
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.review.agent.entity.pojo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分析任务（持久化的任务队列）
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "analysis_job", schema = "review_agent")
+public class AnalysisJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @NotNull
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    /**
+     * 任务状态（0=排队中 1=执行中 2=已完成 3=失败）
+     */
+    @ColumnDefault("0")
+    @Column(name = "status")
+    private Integer status;
+
+    /**
+     * 已尝试次数
+     */
+    @ColumnDefault("0")
+    @Column(name = "attempts")
+    private Integer attempts;
+
+    /**
+     * 优先级（0=交互 1=后台）
+     */
+    @ColumnDefault("0")
+    @Column(name = "priority")
+    private Integer priority;
+
+    /**
+     * 当前执行到的节点
+     */
+    @Column(name = "stage")
+    private String stage;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    /**
+     * 批量分析批次ID，单独提交的任务为空
+     */
+    @Column(name = "batch_id")
+    private String batchId;
+
+    /**
+     * 分析出的会话数量
+     */
+    @Column(name = "session_count")
+    private Integer sessionCount;
+
+    @ColumnDefault("0")
+    @Column(name = "prompt_tokens")
+    private Long promptTokens;
+
+    @ColumnDefault("0")
+    @Column(name = "completion_tokens")
+    private Long completionTokens;
+
+    /**
+     * 输入中命中模型前缀缓存的 token 数
+     */
+    @ColumnDefault("0")
+    @Column(name = "cached_prompt_tokens")
+    private Long cachedPromptTokens;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @Column(name = "created_time")
+    private LocalDateTime createdTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @Column(name = "started_time")
+    private LocalDateTime startedTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @Column(name = "finished_time")
+    private LocalDateTime finishedTime;
+
+    /**
+     * 最早可派发时间，文件正被其他任务分析时延迟派发，为空表示随时可派发
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @Column(name = "not_before")
+    private LocalDateTime notBefore;
+
+}
@@ -44,6 +44,12 @@ public class AnalysisResult {
     @Column(name = "session_content")
     private String sessionContent;
 
+    /**
+     * 会话指纹（规范化内容 + 提示词/模型版本），用于复用相同会话的分析结果
+     */
+    @Column(name = "fingerprint")
+    private String fingerprint;
+
     @NotNull
     @Column(name = "status", nullable = false)
     private Integer status;
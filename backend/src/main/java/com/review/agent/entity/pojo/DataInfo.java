@@ -52,5 +52,18 @@ public class DataInfo {
     @Column(name = "update_time")
     private Date updateTime;
 
+    /**
+     * 已分析内容的结束字符偏移，文件追加内容后只分析该偏移之后的记录
+     */
+    @ColumnDefault("0")
+    @Column(name = "analyzed_offset")
+    private Integer analyzedOffset;
+
+    /**
+     * 已分析内容（0 ~ analyzedOffset）的MD5，用于判断文件是否只追加了内容
+     */
+    @Column(name = "analyzed_hash")
+    private String analyzedHash;
+
 
 }
\ No newline at end of file
@@ -67,5 +67,11 @@ public class UserConfig {
     @Column(name = "weekly_cron")
     private String weeklyCron;
 
+    /**
+     * 分析工作流模式（standard / fused），为空时使用系统默认
+     */
+    @Column(name = "analysis_graph_mode")
+    private String analysisGraphMode;
+
 
 }
\ No newline at end of file
@@ -49,4 +49,9 @@ public class UserConfigUpdateRequest {
      */
     @JsonFormat(pattern = "HH:mm:ss", timezone = "GMT+8")
     private LocalTime weeklyAnalysisTime;
+
+    /**
+     * 分析工作流模式（standard / fused）
+     */
+    private String analysisGraphMode;
 }
\ No newline at end of file
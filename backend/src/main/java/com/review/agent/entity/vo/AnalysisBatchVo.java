@@ -0,0 +1,38 @@
+package com.review.agent.entity.vo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量分析进度与吞吐VO
+ */
+@Data
+public class AnalysisBatchVo {
+    private String batchId;
+    private Integer totalCount;
+    private Integer queuedCount;
+    private Integer runningCount;
+    private Integer succeededCount;
+    private Integer failedCount;
+    /**
+     * 批次是否已全部结束
+     */
+    private Boolean finished;
+    private Long sessionCount;
+    private Long totalTokens;
+    /**
+     * 从提交到最后一个任务结束（或当前时间）的耗时（秒）
+     */
+    private Long elapsedSeconds;
+    private Double filesPerMinute;
+    private Double sessionsPerMinute;
+    private Double tokensPerMinute;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime createdTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime finishedTime;
+}
@@ -0,0 +1,41 @@
+package com.review.agent.entity.vo;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分析任务状态VO
+ */
+@Data
+public class AnalysisJobVo {
+    private Long jobId;
+    private Long fileId;
+    private Integer status;
+    private Integer attempts;
+    /**
+     * 优先级（0=交互 1=后台）
+     */
+    private Integer priority;
+    /**
+     * 当前执行到的节点
+     */
+    private String stage;
+    /**
+     * 排在前面的任务数量（仅排队中有效）
+     */
+    private Long queuePosition;
+    private String errorMessage;
+    private String batchId;
+    private Integer sessionCount;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime createdTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime startedTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime finishedTime;
+}
@@ -0,0 +1,39 @@
+package com.review.agent.entity.vo;
+
+import lombok.Data;
+
+/**
+ * 分析工作流对比结果VO
+ */
+@Data
+public class GraphBenchmarkVo {
+    /**
+     * 工作流模式（standard / fused）
+     */
+    private String mode;
+    private Integer sessionCount;
+    private Integer errorCount;
+    /**
+     * 模型调用次数
+     */
+    private Long llmCalls;
+    private Long promptTokens;
+    private Long completionTokens;
+    /**
+     * 输入中命中模型前缀缓存的 token 数
+     */
+    private Long cachedPromptTokens;
+    private Long totalTokens;
+    /**
+     * 执行耗时（毫秒）
+     */
+    private Long elapsedMillis;
+    /**
+     * 相对标准模式的 token 比例
+     */
+    private Double tokenRatio;
+    /**
+     * 相对标准模式的耗时比例
+     */
+    private Double latencyRatio;
+}
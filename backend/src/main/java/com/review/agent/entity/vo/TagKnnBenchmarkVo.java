@@ -0,0 +1,38 @@
+package com.review.agent.entity.vo;
+
+import lombok.Data;
+
+/**
+ * 近邻标签分类与模型分类的一致性对比结果VO
+ */
+@Data
+public class TagKnnBenchmarkVo {
+    /**
+     * 参与对比的历史会话数量
+     */
+    private Integer sampleCount;
+    /**
+     * 近邻投票给出结果（不需要调用模型）的会话数量
+     */
+    private Integer coveredCount;
+    /**
+     * 覆盖率：coveredCount / sampleCount
+     */
+    private Double coverage;
+    /**
+     * 主标签与模型分类一致的会话数量
+     */
+    private Integer agreedCount;
+    /**
+     * 主标签一致率：agreedCount / coveredCount
+     */
+    private Double agreement;
+    /**
+     * 子标签与模型分类完全一致的会话数量占 coveredCount 的比例
+     */
+    private Double subTagAgreement;
+    /**
+     * 单个会话的平均分类耗时（毫秒）
+     */
+    private Double avgLatencyMillis;
+}
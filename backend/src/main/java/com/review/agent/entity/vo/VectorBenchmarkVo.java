@@ -0,0 +1,31 @@
+package com.review.agent.entity.vo;
+
+import lombok.Data;
+
+/**
+ * 向量写入对比结果VO
+ */
+@Data
+public class VectorBenchmarkVo {
+    /**
+     * 写入方式（single / batch）
+     */
+    private String mode;
+    private Integer documentCount;
+    /**
+     * 向量化请求次数
+     */
+    private Integer embeddingCalls;
+    /**
+     * 写入耗时（毫秒）
+     */
+    private Long elapsedMillis;
+    /**
+     * 每秒写入文档数
+     */
+    private Double documentsPerSecond;
+    /**
+     * 相对逐个写入的吞吐量倍数
+     */
+    private Double speedup;
+}
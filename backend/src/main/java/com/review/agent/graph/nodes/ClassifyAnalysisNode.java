@@ -0,0 +1,129 @@
+package com.review.agent.graph.nodes;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.review.agent.common.exception.AnalysisCancelledException;
+import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.graph.support.SessionAnalysisRunner;
+import com.review.agent.graph.support.StructuredOutputParser;
+import com.review.agent.service.PromptService;
+import com.review.agent.service.SseService;
+import com.review.agent.service.TagService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.review.agent.common.constant.CommonConstant.ANALYSIS_STATUS_ERROR;
+import static com.review.agent.common.constant.CommonConstant.ANALYSIS_STATUS_PROCESSED;
+import static com.review.agent.config.MultiLLMConfig.ANALYSIS_MODEL;
+import static com.review.agent.config.TokenUsageTracker.USAGE_KEY;
+
+/**
+ * 分类分析一体化节点：一次模型调用同时完成标签分类与会话分析
+ */
+@Slf4j
+@Component
+public class ClassifyAnalysisNode implements NodeAction {
+    @Resource
+    private PromptService promptService;
+
+    @Resource
+    private TagService tagService;
+
+    @Resource(name = "analysisChatClient")
+    private ChatClient chatClient;
+
+    @Resource
+    private SseService sseService;
+
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
+    @Resource
+    private SessionAnalysisRunner sessionAnalysisRunner;
+
+    /**
+     * 节点名称，用于记录会话进度
+     */
+    private static final String STAGE = "classify_analysis_agent";
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) {
+        log.info("======ClassifyAnalysisNode apply start======");
+
+        // 解析状态
+        Object optional = state.value("userId").orElseThrow(() -> new IllegalArgumentException("userId is null"));
+        Long userId = null;
+        if (optional instanceof Long l) {
+            userId = l;
+        } else if (optional instanceof List<?> strings) {
+            userId = Long.parseLong(strings.get(1).toString());
+        }
+        @SuppressWarnings("unchecked")
+        List<NodeExecuteDto> nodeDtoList = (List<NodeExecuteDto>) state.value("nodeResult")
+                .orElseThrow(() -> new IllegalArgumentException("nodeDtoList is null"));
+        String usageKey = state.value(USAGE_KEY).map(Object::toString).orElse("");
+
+        sseService.sendLog(userId, "🔍 正在匹配标签并分析每个会话内容...");
+
+        Map<String, Long> nameToIdMap = new HashMap<>();
+        // 获取系统提示词
+        String categories = tagService.buildClassifyCategories(userId, nameToIdMap);
+        String systemPrompt = promptService.getClassifyAnalysisPrompt(categories);
+
+        sessionAnalysisRunner.analyzeAndPersist(state, STAGE, ANALYSIS_MODEL, nodeDtoList,
+                result -> classifyAndAnalyze(result, systemPrompt, nameToIdMap, usageKey));
+
+        return Map.of("nodeResult", nodeDtoList);
+    }
+
+    /**
+     * 对单个会话进行分类与分析
+     * @param result 会话信息对象
+     * @param systemPrompt 系统提示词
+     * @param nameToIdMap 标签名称到ID的映射
+     * @param usageKey 用量统计 key
+     */
+    private void classifyAndAnalyze(NodeExecuteDto result, String systemPrompt, Map<String, Long> nameToIdMap, String usageKey) {
+        try {
+            AiClassifyAnalysisResult response = structuredOutputParser.call(chatClient, systemPrompt, result.getSessionContent(),
+                    usageKey, AiClassifyAnalysisResult.class);
+
+            if (response == null) {
+                log.info("AI 分类分析失败，sessionStart：{}，sessionEnd：{}", result.getSessionStart(), result.getSessionEnd());
+                result.setStatus(ANALYSIS_STATUS_ERROR);
+                return;
+            }
+
+            List<String> subCategory = response.subCategory() == null ? List.of() : response.subCategory();
+            List<String> subTagIdList = subCategory.stream()
+                    .filter(nameToIdMap::containsKey)
+                    .map(nameToIdMap::get)
+                    .map(String::valueOf)
+                    .toList();
+            result.setTagId(nameToIdMap.get(response.category()));
+            result.setSubTagId(String.join(",", subTagIdList));
+            result.setSubTagName(String.join(",", subCategory));
+            if (response.recommends() != null) {
+                result.setRecommends(String.join(",", response.recommends()));
+            }
+            result.setProblemStatement(response.problem());
+            result.setSolution(response.analysisReport());
+            result.setStatus(ANALYSIS_STATUS_PROCESSED);
+        } catch (AnalysisCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI 分类分析异常，sessionStart：{}，sessionEnd：{}", result.getSessionStart(), result.getSessionEnd(), e);
+            result.setStatus(ANALYSIS_STATUS_ERROR);
+        }
+    }
+
+    record AiClassifyAnalysisResult(String category, List<String> subCategory, List<String> recommends,
+                                    String problem, String analysisReport) {
+    }
+
+}
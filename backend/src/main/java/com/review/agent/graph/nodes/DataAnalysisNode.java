@@ -2,7 +2,10 @@ package com.review.agent.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.review.agent.common.exception.AnalysisCancelledException;
 import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.graph.support.SessionAnalysisRunner;
+import com.review.agent.graph.support.StructuredOutputParser;
 import com.review.agent.service.PromptService;
 import com.review.agent.service.SseService;
 import jakarta.annotation.Resource;
@@ -15,6 +18,8 @@ import java.util.Map;
 
 import static com.review.agent.common.constant.CommonConstant.ANALYSIS_STATUS_ERROR;
 import static com.review.agent.common.constant.CommonConstant.ANALYSIS_STATUS_PROCESSED;
+import static com.review.agent.config.MultiLLMConfig.ANALYSIS_MODEL;
+import static com.review.agent.config.TokenUsageTracker.USAGE_KEY;
 
 /**
  * 数据分析节点
@@ -32,6 +37,16 @@ public class DataAnalysisNode implements NodeAction {
     @Resource
     private SseService sseService;
 
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
+    @Resource
+    private SessionAnalysisRunner sessionAnalysisRunner;
+
+    /**
+     * 节点名称，用于记录会话进度
+     */
+    private static final String STAGE = "analysis_agent";
+
     @Override
     public Map<String, Object> apply(OverAllState state) {
         log.info("======DataAnalysisNode apply start======");
@@ -55,21 +70,33 @@ public class DataAnalysisNode implements NodeAction {
         List<NodeExecuteDto> nodeDtoList = (List<NodeExecuteDto>) state.value("nodeResult")
                 .orElseThrow(() -> new IllegalArgumentException("nodeDtoList is null"));
 
+        String usageKey = state.value(USAGE_KEY).map(Object::toString).orElse("");
+
         sseService.sendLog(userId, "🔍 开始分析文件中的每个会话内容...");
 
+        // 按会话并发调用，结果直接写回各自的会话对象，顺序与输入一致
+        Long finalFileId = fileId;
+        sessionAnalysisRunner.analyzeAndPersist(state, STAGE, ANALYSIS_MODEL, nodeDtoList,
+                result -> analyzeSession(result, finalFileId, usageKey));
+
+        return Map.of("nodeResult", nodeDtoList);
+    }
 
-        for (NodeExecuteDto result : nodeDtoList) {
+    /**
+     * 分析单个会话
+     * @param result 会话信息对象
+     * @param fileId 文件ID
+     * @param usageKey 用量统计 key
+     */
+    private void analyzeSession(NodeExecuteDto result, Long fileId, String usageKey) {
+        try {
             // 获取系统提示词
             String systemPrompt = getSystemPrompt(result.getSubTagName());
 
             // 调用AI
-            AiAnalysisResult response = chatClient.prompt()
-                    .system(systemPrompt)
-                    .user(result.getSessionContent())
-                    .call()
-                    .entity(AiAnalysisResult.class);
+            AiAnalysisResult response = structuredOutputParser.call(chatClient, systemPrompt, result.getSessionContent(),
+                    usageKey, AiAnalysisResult.class);
 
-            // TODO 错误处理
             if (response == null) {
                 log.info("AI 分析失败，fileId={}", fileId);
                 result.setStatus(ANALYSIS_STATUS_ERROR);
@@ -78,9 +105,12 @@ public class DataAnalysisNode implements NodeAction {
                 result.setSolution(response.analysisReport());
                 result.setStatus(ANALYSIS_STATUS_PROCESSED);
             }
+        } catch (AnalysisCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI 分析异常，fileId={}，sessionStart：{}", fileId, result.getSessionStart(), e);
+            result.setStatus(ANALYSIS_STATUS_ERROR);
         }
-
-        return Map.of("nodeResult", nodeDtoList);
     }
 
     /**
@@ -89,6 +119,9 @@ public class DataAnalysisNode implements NodeAction {
      * @return 系统提示词
      */
     private String getSystemPrompt(String subTagName) {
+        if (subTagName == null) {
+            return promptService.getAnalysisPrompt("");
+        }
         String nameUpperCase= subTagName.toUpperCase();
         if (nameUpperCase.contains("思维拓展")) {
             return promptService.getExtensionAnalysisPrompt("");
@@ -2,22 +2,21 @@ package com.review.agent.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONArray;
-import com.alibaba.fastjson2.JSONObject;
 import com.review.agent.entity.dto.NodeExecuteDto;
-import com.review.agent.service.PromptService;
+import com.review.agent.graph.segment.SessionRange;
+import com.review.agent.graph.segment.SessionSegmenter;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import com.review.agent.service.SessionDedupService;
 import com.review.agent.service.SseService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import static com.review.agent.config.TokenUsageTracker.USAGE_KEY;
 
 /**
  * 会话提取节点：提取出不同会话的上下文（将一个文件内容提取出不同会话）
@@ -25,13 +24,12 @@ import java.util.regex.Pattern;
 @Slf4j
 @Component
 public class SessionExtractionNode implements NodeAction {
-    @Resource
-    private PromptService promptService;
-
-    @Resource(name = "extractChatClient")
-    private ChatClient chatClient;
+    @Resource(name = "sessionSegmenter")
+    private SessionSegmenter sessionSegmenter;
     @Resource
     private SseService sseService;
+    @Resource
+    private SessionDedupService sessionDedupService;
 
     @Override
     public Map<String, Object> apply(OverAllState state) {
@@ -53,95 +51,77 @@ public class SessionExtractionNode implements NodeAction {
         } else if (optional instanceof List<?> strings) {
             userId = Long.parseLong(strings.get(1).toString());
         }
+        // 从检查点恢复的任务已经拆分过会话
+        Object checkpointResult = state.value("nodeResult").orElse(null);
+        if (checkpointResult instanceof List<?> list && !list.isEmpty()) {
+            log.info("从检查点恢复会话列表, 会话数量: {}, fileId={}", list.size(), fileId);
+            return Map.of("nodeResult", checkpointResult);
+        }
         sseService.sendLog(userId, "🤔 拆分文件中...正在计算文件会话数量");
 
-        // 获取系统提示词
-        String systemPrompt = promptService.getSessionExtractionPrompt("");
-
-        // 调用AI
-        String result = chatClient.prompt()
-                .system(systemPrompt)
-                .user(originalContent)
-                .call()
-                .content();
-
-        result = formatResult(result);
-        if (result == null) {
-            log.info("AI 会话提取失败，fileId={}", fileId);
+        String usageKey = state.value(USAGE_KEY).map(Object::toString).orElse("");
+        // 增量分析：originalContent 为文件从 contentOffset 开始的内容，该范围内的旧结果都会被替换，拆分出的会话全部重新分析
+        int contentOffset = intValue(state, "contentOffset");
+        // 后台任务（批量分析）的拆分调用同样只占用后台并发
+        boolean background = state.value("background").map(value -> Boolean.parseBoolean(value.toString())).orElse(false);
+
+        // 一次扫描建立对话记录索引
+        DialogueRecordIndex recordIndex = DialogueRecordIndex.of(originalContent);
+        log.info("对话记录数量: {}, fileId={}", recordIndex.size(), fileId);
+
+        // 拆分会话，只有一条记录时无需拆分
+        List<SessionRange> rangeList = recordIndex.size() == 1
+                ? List.of(new SessionRange(1, 1))
+                : sessionSegmenter.segment(recordIndex, usageKey, background);
+        if (rangeList.isEmpty()) {
+            log.info("会话提取失败，fileId={}", fileId);
             return Map.of();
         }
 
         // 构建结果列表
-        List<NodeExecuteDto> nodeDtoList = buildNodeExecuteList(result, originalContent, userId, fileId);
-        return Map.of("nodeResult", nodeDtoList);
-    }
+        List<NodeExecuteDto> nodeDtoList = buildNodeExecuteList(rangeList, recordIndex, contentOffset, userId, fileId);
 
-    public String formatResult(String result) {
-        if (result == null) {
-            return "";
+        // 已分析过的相同会话直接复用结果，后续节点不再调用模型（工作流对比时关闭）
+        boolean dedupEnabled = state.value("dedupEnabled").map(value -> Boolean.parseBoolean(value.toString())).orElse(true);
+        int reused = dedupEnabled ? sessionDedupService.applyCached(userId, nodeDtoList) : 0;
+        if (reused > 0) {
+            sseService.sendLog(userId, "♻️ " + reused + " 个会话已分析过，直接复用结果");
         }
-        return result.replaceAll("^\\s*```json\\s*", "")   // 去除开头 ```json
-                .replaceAll("^\\s*```\\s*", "")       // 或者可能是 ``` 开头
-                .replaceAll("\\s*```\\s*$", "")       // 去除结尾 ```
-                .trim();
+        return Map.of("nodeResult", nodeDtoList);
     }
 
-
     /**
      * 构建节点执行结果列表
-     * @param result 会话提取结果
+     * @param rangeList 会话范围列表
+     * @param recordIndex 对话记录索引
+     * @param contentOffset 内容在文件中的起始偏移
      * @param userId 用户ID
      * @param fileId 文件ID
      * @return 节点执行结果列表
      */
-    private List<NodeExecuteDto> buildNodeExecuteList(String result, String originalContent, Long userId, Long fileId) {
+    private List<NodeExecuteDto> buildNodeExecuteList(List<SessionRange> rangeList, DialogueRecordIndex recordIndex, int contentOffset, Long userId, Long fileId) {
         List<NodeExecuteDto> nodeDtoList = new ArrayList<>();
-
-        JSONArray jsonArray = JSON.parseArray(result);
-        for (Object session : jsonArray) {
-            JSONObject sessionJson = (JSONObject) session;
-            int startIndex = sessionJson.getIntValue("startIndex");
-            int endIndex = sessionJson.getIntValue("endIndex");
+        for (SessionRange range : rangeList) {
             NodeExecuteDto nodeExecute = new NodeExecuteDto();
-            nodeExecute.setSessionStart(startIndex);
-            nodeExecute.setSessionEnd(endIndex);
             nodeExecute.setUserId(userId);
             nodeExecute.setFileId(fileId);
-
-            handleSessionContent(originalContent, nodeExecute);
+            // 会话起止位置记录为文件中的字符偏移
+            nodeExecute.setSessionStart(contentOffset + recordIndex.start(range.startNo()));
+            nodeExecute.setSessionEnd(contentOffset + recordIndex.end(range.endNo()));
+            nodeExecute.setSessionContent(recordIndex.slice(range.startNo(), range.endNo()));
 
             nodeDtoList.add(nodeExecute);
         }
         return nodeDtoList;
     }
 
-    /**
-     * 提取指定会话内容
-     * @param originalContent 文件内容
-     * @param nodeExecute 会话信息对象
-     */
-    private void handleSessionContent(String originalContent, NodeExecuteDto nodeExecute) {
-        Integer startIndex = nodeExecute.getSessionStart();
-        Integer endIndex = nodeExecute.getSessionEnd();
-
-        String regex = "(?ms)(^\\s*#\\s+\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2}.*?)(?=(?:^\\s*#\\s+\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})|\\z)";
-
-        Matcher matcher = Pattern.compile(regex).matcher(originalContent);
-        StringBuilder stringBuilder = new StringBuilder();
-        int count = 0;
-        while (matcher.find()) {
-            count++;
-            String session = matcher.group();
-            if (count == startIndex) {
-                nodeExecute.setSessionStart(matcher.start());
-                stringBuilder.append(session).append("\n");
-            }
-            if (count == endIndex) {
-                nodeExecute.setSessionEnd(matcher.end());
-                stringBuilder.append(session).append("\n");
-            }
+    private int intValue(OverAllState state, String key) {
+        Object value = state.value(key).orElse(null);
+        if (value instanceof Number number) {
+            return number.intValue();
+        } else if (value instanceof List<?> strings) {
+            return Integer.parseInt(strings.get(1).toString());
         }
-        nodeExecute.setSessionContent(stringBuilder.toString());
+        return 0;
     }
-
-}
\ No newline at end of file
+}
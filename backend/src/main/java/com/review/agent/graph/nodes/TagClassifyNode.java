@@ -2,23 +2,44 @@ package com.review.agent.graph.nodes;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
-import com.review.agent.entity.pojo.MainTag;
-import com.review.agent.entity.pojo.SubTag;
+import com.review.agent.common.exception.AnalysisCancelledException;
+import com.review.agent.config.AnalysisConcurrencyConfig;
 import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.graph.support.SessionAnalysisRunner;
+import com.review.agent.graph.support.SessionTaskRunner;
+import com.review.agent.graph.support.StructuredOutputParser;
 import com.review.agent.service.PromptService;
 import com.review.agent.service.SseService;
+import com.review.agent.service.TagKnnClassifier;
 import com.review.agent.service.TagService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.LongSummaryStatistics;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.review.agent.config.MultiLLMConfig.CLASSIFY_MODEL;
+import static com.review.agent.config.MultiLLMConfig.LOCAL_MODEL;
+import static com.review.agent.config.TokenUsageTracker.USAGE_KEY;
 
 /**
- * 标签分类节点
+ * 标签分类节点：启用近邻分类时先按相似的历史会话投票，票数不够集中的会话再交给模型；
+ * 启用级联时先由本地模型分类，置信度不足的会话再交给云端模型
  */
 @Slf4j
 @Component
@@ -31,9 +52,81 @@ public class TagClassifyNode implements NodeAction {
 
     @Resource(name = "classifyChatClient")
     private ChatClient chatClient;
+    @Resource(name = "ollamachatClient")
+    private ChatClient localChatClient;
     @Resource
     private SseService sseService;
+    @Resource
+    private SessionTaskRunner sessionTaskRunner;
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
+    @Resource
+    private SessionAnalysisRunner sessionAnalysisRunner;
+    @Resource
+    private TagKnnClassifier tagKnnClassifier;
+
+    /**
+     * 节点名称，用于记录会话进度
+     */
+    private static final String STAGE = "tag_classify_agent";
+    @Resource
+    private AnalysisConcurrencyConfig concurrencyConfig;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用级联分类
+     */
+    @Value("${analysis.cascade.enabled:false}")
+    private boolean cascadeEnabled;
+
+    /**
+     * 本地模型分类置信度不低于该值时直接采用，否则升级到云端模型
+     */
+    @Value("${analysis.cascade.confidence-threshold:0.8}")
+    private double confidenceThreshold;
+
+    private Timer classifyTimer;
+    private Timer localTierTimer;
+    private Timer remoteTierTimer;
+    private Counter acceptedCounter;
+    private Counter escalatedCounter;
+    private Counter knnAcceptedCounter;
+    private Counter knnFallbackCounter;
+
+    @PostConstruct
+    public void init() {
+        classifyTimer = Timer.builder("analysis.classify.session.latency")
+                .description("单个会话标签分类耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        localTierTimer = tierTimer("local");
+        remoteTierTimer = tierTimer("remote");
+        acceptedCounter = Counter.builder("analysis.classify.cascade")
+                .description("级联分类中本地模型结果被采用的会话数量")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        escalatedCounter = Counter.builder("analysis.classify.cascade")
+                .description("级联分类中升级到云端模型的会话数量")
+                .tag("result", "escalated")
+                .register(meterRegistry);
+        knnAcceptedCounter = Counter.builder("analysis.classify.knn")
+                .description("近邻投票结果被采用的会话数量")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        knnFallbackCounter = Counter.builder("analysis.classify.knn")
+                .description("近邻投票不确定、交给模型分类的会话数量")
+                .tag("result", "fallback")
+                .register(meterRegistry);
+    }
 
+    private Timer tierTimer(String tier) {
+        return Timer.builder("analysis.classify.tier.latency")
+                .description("各级模型单次分类调用耗时")
+                .tag("tier", tier)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
 
     @Override
     public Map<String, Object> apply(OverAllState state) {
@@ -56,62 +149,242 @@ public class TagClassifyNode implements NodeAction {
 
         Map<String, Long> nameToIdMap = new HashMap<>();
         // 获取系统提示词
-        String categories = buildCategories(userId, nameToIdMap);
+        String categories = tagService.buildClassifyCategories(userId, nameToIdMap);
         String systemPrompt = promptService.getClassifyPrompt(categories);
+        String usageKey = state.value(USAGE_KEY).map(Object::toString).orElse("");
 
-        for (NodeExecuteDto result : nodeDtoList) {
-            // 调用AI
-            AiAnalysisResult response = chatClient.prompt()
-                    .system(systemPrompt)
-                    .user(result.getSessionContent())
-                    .call()
-                    .entity(AiAnalysisResult.class);
-
-            if (response == null) {
-                log.info("AI 分类标签失败，sessionStart：{}，sessionEnd：{}，", result.getSessionStart(), result.getSessionEnd());
-                continue;
+        List<NodeExecuteDto> pendingList = sessionAnalysisRunner.restorePending(state, STAGE, nodeDtoList);
+        boolean background = sessionAnalysisRunner.isBackground(state);
+        List<Long> latencyList = new CopyOnWriteArrayList<>();
+        ClassifyStats stats = new ClassifyStats(userId, nameToIdMap);
+        if (tagKnnClassifier.isEnabled()) {
+            // 主标签与子标签的ID来自不同的表，可能重复，分别建立ID到名称的映射
+            tagService.findMainTagList(userId).forEach(tag -> stats.mainTagNameMap.put(tag.getId(), tag.getName()));
+            tagService.findSubTagList(userId).forEach(tag -> stats.subTagNameMap.put(tag.getId(), tag.getName()));
+        }
+        if (concurrencyConfig.isClassifyParallel()) {
+            // 并发分类，每个会话完成后直接写回对应的会话对象；
+            // 近邻投票与本地模型不占用云端模型的并发，只有需要云端模型的会话再按云端模型的并发调用
+            List<NodeExecuteDto> remoteList = pendingList;
+            Map<NodeExecuteDto, Long> startMap = Collections.synchronizedMap(new IdentityHashMap<>());
+            if (tagKnnClassifier.isEnabled() || cascadeEnabled) {
+                List<NodeExecuteDto> escalatedList = new CopyOnWriteArrayList<>();
+                sessionTaskRunner.runAll(LOCAL_MODEL, background, pendingList,
+                        result -> {
+                            long start = System.nanoTime();
+                            if (classifyLocally(result, systemPrompt, usageKey, stats)) {
+                                latencyList.add(recordLatency(start, result));
+                                sessionAnalysisRunner.saveProgress(state, STAGE, result);
+                            } else {
+                                startMap.put(result, start);
+                                escalatedList.add(result);
+                            }
+                        });
+                remoteList = escalatedList;
+            }
+            sessionTaskRunner.runAll(CLASSIFY_MODEL, background, remoteList,
+                    result -> {
+                        long start = startMap.getOrDefault(result, System.nanoTime());
+                        classifyRemote(result, systemPrompt, usageKey, stats.nameToIdMap);
+                        latencyList.add(recordLatency(start, result));
+                        sessionAnalysisRunner.saveProgress(state, STAGE, result);
+                    });
+        } else {
+            for (NodeExecuteDto result : pendingList) {
+                latencyList.add(classifySession(result, systemPrompt, usageKey, stats));
+                sessionAnalysisRunner.saveProgress(state, STAGE, result);
             }
+        }
 
-            // 构建结果列表
-            result.setTagId(nameToIdMap.get(response.category()));
-            result.setRecommends(String.join(",", response.recommends()));
-            List<String> subTagIdList = response.subCategory().stream()
-                    .filter(nameToIdMap::containsKey)
-                    .map(nameToIdMap::get)
-                    .map(String::valueOf)
-                    .toList();
-            result.setSubTagId(String.join(",", subTagIdList));
-            result.setSubTagName(String.join(",", response.subCategory()));
+        LongSummaryStatistics statistics = latencyList.stream().mapToLong(Long::longValue).summaryStatistics();
+        log.info("标签分类完成，会话数：{}，平均耗时：{}ms，最大耗时：{}ms", statistics.getCount(),
+                (long) statistics.getAverage(), statistics.getMax());
+        sseService.sendLog(userId, "🏷️ 标签匹配完成，共 " + statistics.getCount() + " 个会话，最慢 " + statistics.getMax() + "ms");
+        if (tagKnnClassifier.isEnabled() && statistics.getCount() > 0) {
+            long accepted = stats.knnAccepted.get();
+            log.info("近邻分类完成，会话数：{}，直接采用：{}，采用率：{}%", statistics.getCount(), accepted,
+                    accepted * 100 / statistics.getCount());
+        }
+        if (cascadeEnabled && statistics.getCount() > 0) {
+            long escalated = stats.escalated.get();
+            log.info("级联分类完成，会话数：{}，升级到云端模型：{}，升级率：{}%", statistics.getCount(), escalated,
+                    escalated * 100 / statistics.getCount());
         }
 
         return Map.of("nodeResult", nodeDtoList);
     }
 
     /**
-     * 构建分类类别
-     * @param userId 用户ID
-     * @return 分类类别
+     * 对单个会话进行标签分类
+     * @param result 会话信息对象
+     * @param systemPrompt 系统提示词
+     * @param usageKey 用量统计 key
+     * @param stats 本次分类的统计
+     * @return 分类耗时（毫秒）
      */
-    private String buildCategories(Long userId, Map<String, Long> nameToIdMap) {
-        StringBuilder stringBuilder = new StringBuilder();
-        // 主标签
-        List<MainTag> mainTagList = tagService.findMainTagList(userId);
-        for (MainTag mainTag : mainTagList) {
-            nameToIdMap.put(mainTag.getName(), mainTag.getId());
-            stringBuilder.append(mainTag.getName()).append("\n");
-
-            // 子标签
-            List<SubTag> subTagList = tagService.findSubTagListByMainTagId(userId, mainTag.getId());
-            for (SubTag subTag : subTagList) {
-                nameToIdMap.put(subTag.getName(), subTag.getId());
-                stringBuilder.append("- ").append(subTag.getName()).append("\n");
+    private long classifySession(NodeExecuteDto result, String systemPrompt, String usageKey, ClassifyStats stats) {
+        long start = System.nanoTime();
+        if (!classifyLocally(result, systemPrompt, usageKey, stats)) {
+            classifyRemote(result, systemPrompt, usageKey, stats.nameToIdMap);
+        }
+        return recordLatency(start, result);
+    }
+
+    /**
+     * 近邻投票与本地模型分类，不调用云端模型
+     * @param result 会话信息对象
+     * @param systemPrompt 系统提示词
+     * @param usageKey 用量统计 key
+     * @param stats 本次分类的统计
+     * @return 是否已完成分类，false 表示需要交给云端模型
+     */
+    private boolean classifyLocally(NodeExecuteDto result, String systemPrompt, String usageKey, ClassifyStats stats) {
+        try {
+            if (tagKnnClassifier.isEnabled() && classifyByKnn(result, stats)) {
+                return true;
             }
+            if (!cascadeEnabled) {
+                return false;
+            }
+            AiAnalysisResult response = classifyLocal(result, systemPrompt, stats.nameToIdMap, usageKey);
+            if (response == null) {
+                stats.escalated.incrementAndGet();
+                return false;
+            }
+            applyResponse(result, response, stats.nameToIdMap);
+        } catch (AnalysisCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI 分类标签异常，sessionStart：{}，sessionEnd：{}", result.getSessionStart(), result.getSessionEnd(), e);
         }
-        return stringBuilder.toString();
+        return true;
     }
 
+    /**
+     * 云端模型分类
+     * @param result 会话信息对象
+     * @param systemPrompt 系统提示词
+     * @param usageKey 用量统计 key
+     * @param nameToIdMap 标签名称到ID的映射
+     */
+    private void classifyRemote(NodeExecuteDto result, String systemPrompt, String usageKey, Map<String, Long> nameToIdMap) {
+        try {
+            AiAnalysisResult response = call(chatClient, remoteTierTimer, result, systemPrompt, usageKey);
+            if (response == null) {
+                log.info("AI 分类标签失败，sessionStart：{}，sessionEnd：{}，", result.getSessionStart(), result.getSessionEnd());
+            } else {
+                applyResponse(result, response, nameToIdMap);
+            }
+        } catch (AnalysisCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI 分类标签异常，sessionStart：{}，sessionEnd：{}", result.getSessionStart(), result.getSessionEnd(), e);
+        }
+    }
+
+    /**
+     * 将模型的分类结果写回会话对象
+     */
+    private void applyResponse(NodeExecuteDto result, AiAnalysisResult response, Map<String, Long> nameToIdMap) {
+        result.setTagId(nameToIdMap.get(response.category()));
+        result.setRecommends(String.join(",", response.recommends()));
+        List<String> subTagIdList = response.subCategory().stream()
+                .filter(nameToIdMap::containsKey)
+                .map(nameToIdMap::get)
+                .map(String::valueOf)
+                .toList();
+        result.setSubTagId(String.join(",", subTagIdList));
+        result.setSubTagName(String.join(",", response.subCategory()));
+        result.setConfidence(response.confidence());
+    }
+
+    private long recordLatency(long start, NodeExecuteDto result) {
+        long latency = elapsedMillis(start);
+        classifyTimer.record(latency, TimeUnit.MILLISECONDS);
+        log.info("会话分类耗时：{}ms，sessionStart：{}", latency, result.getSessionStart());
+        return latency;
+    }
+
+    /**
+     * 按相似的历史会话投票分类，异常时交给模型分类
+     * @return 是否采用了投票结果
+     */
+    private boolean classifyByKnn(NodeExecuteDto result, ClassifyStats stats) {
+        TagKnnClassifier.KnnTagResult knnResult = null;
+        try {
+            knnResult = tagKnnClassifier.classify(stats.userId, result.getProblemStatement(), result.getSessionContent(),
+                    stats.mainTagNameMap.keySet(), stats.subTagNameMap.keySet(), null);
+        } catch (Exception e) {
+            log.warn("近邻分类异常，交给模型分类，sessionStart：{}", result.getSessionStart(), e);
+        }
+        if (knnResult == null) {
+            knnFallbackCounter.increment();
+            return false;
+        }
+        knnAcceptedCounter.increment();
+        stats.knnAccepted.incrementAndGet();
+        result.setTagId(knnResult.tagId());
+        result.setRecommends("");
+        result.setSubTagId(knnResult.subTagIdList().stream().map(String::valueOf).collect(Collectors.joining(",")));
+        result.setSubTagName(knnResult.subTagIdList().stream().map(stats.subTagNameMap::get).collect(Collectors.joining(",")));
+        result.setConfidence(knnResult.agreement());
+        log.debug("近邻分类采用，主标签：{}，近邻数：{}，占比：{}", knnResult.tagId(), knnResult.neighbors(), knnResult.agreement());
+        return true;
+    }
+
+    /**
+     * 本地模型分类，置信度足够且主分类有效时采用
+     * @return 本地模型的分类结果，需要升级到云端模型时为 null
+     */
+    private AiAnalysisResult classifyLocal(NodeExecuteDto result, String systemPrompt, Map<String, Long> nameToIdMap, String usageKey) {
+        AiAnalysisResult response = null;
+        try {
+            response = call(localChatClient, localTierTimer, result, systemPrompt, usageKey);
+        } catch (AnalysisCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("本地模型分类异常，升级到云端模型，sessionStart：{}", result.getSessionStart(), e);
+        }
+        if (response != null && response.confidence() != null && response.confidence() >= confidenceThreshold
+                && nameToIdMap.containsKey(response.category())) {
+            acceptedCounter.increment();
+            return response;
+        }
+        escalatedCounter.increment();
+        return null;
+    }
+
+    private AiAnalysisResult call(ChatClient client, Timer tierTimer, NodeExecuteDto result, String systemPrompt, String usageKey) {
+        long start = System.nanoTime();
+        try {
+            return structuredOutputParser.call(client, systemPrompt, result.getSessionContent(), usageKey, AiAnalysisResult.class);
+        } finally {
+            tierTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 一次节点执行内的分类上下文与统计
+     */
+    private static final class ClassifyStats {
+        private final Long userId;
+        private final Map<String, Long> nameToIdMap;
+        private final Map<Long, String> mainTagNameMap = new HashMap<>();
+        private final Map<Long, String> subTagNameMap = new HashMap<>();
+        private final AtomicInteger escalated = new AtomicInteger();
+        private final AtomicInteger knnAccepted = new AtomicInteger();
+
+        private ClassifyStats(Long userId, Map<String, Long> nameToIdMap) {
+            this.userId = userId;
+            this.nameToIdMap = nameToIdMap;
+        }
+    }
 
-    record AiAnalysisResult(String category, List<String> subCategory, List<String> recommends) {
+    record AiAnalysisResult(String category, List<String> subCategory, List<String> recommends, Double confidence) {
     }
 
 }
\ No newline at end of file
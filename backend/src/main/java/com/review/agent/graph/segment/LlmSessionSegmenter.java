@@ -0,0 +1,204 @@
+package com.review.agent.graph.segment;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.review.agent.common.exception.AnalysisCancelledException;
+import com.review.agent.common.exception.StructuredOutputException;
+import com.review.agent.config.SessionSegmentConfig;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import com.review.agent.graph.support.SessionTaskRunner;
+import com.review.agent.graph.support.StructuredOutputParser;
+import com.review.agent.service.PromptService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.review.agent.config.MultiLLMConfig.EXTRACT_MODEL;
+
+/**
+ * 模型会话拆分：将带序号的文件交给模型，返回每个会话的起止记录序号。
+ * 文件超过单个窗口时按 token 预算切成相互重叠的窗口并行提取，再按窗口归属合并跨窗口的会话
+ */
+@Slf4j
+@Component
+public class LlmSessionSegmenter implements SessionSegmenter {
+    @Resource
+    private PromptService promptService;
+    @Resource(name = "extractChatClient")
+    private ChatClient chatClient;
+    @Resource
+    private SessionSegmentConfig segmentConfig;
+    @Resource
+    private SessionTaskRunner sessionTaskRunner;
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    @Override
+    public List<SessionRange> segment(DialogueRecordIndex recordIndex, String usageKey, boolean background) {
+        if (recordIndex.size() == 0) {
+            return new ArrayList<>();
+        }
+        List<SessionRange> windowList = segmentConfig.isWindowEnabled()
+                ? buildWindows(recordIndex)
+                : List.of(new SessionRange(1, recordIndex.size()));
+        if (windowList.size() <= 1) {
+            List<SessionRange> rangeList = extract(recordIndex, 1, recordIndex.size(), usageKey);
+            return rangeList == null ? new ArrayList<>() : rangeList;
+        }
+
+        // 各窗口并行提取，结果按窗口顺序存放
+        List<List<SessionRange>> windowResultList = new ArrayList<>(windowList.size());
+        List<WindowTask> taskList = new ArrayList<>(windowList.size());
+        for (SessionRange window : windowList) {
+            taskList.add(new WindowTask(window));
+        }
+        sessionTaskRunner.runAll(EXTRACT_MODEL, background, taskList, task -> {
+            try {
+                task.rangeList = extract(recordIndex, task.window.startNo(), task.window.endNo(), usageKey);
+            } catch (AnalysisCancelledException e) {
+                throw e;
+            } catch (Exception e) {
+                task.error = e;
+            }
+        });
+        for (WindowTask task : taskList) {
+            if (task.error != null) {
+                throw new IllegalStateException("session extraction failed in window " + task.window, task.error);
+            }
+            if (task.rangeList == null) {
+                log.warn("窗口会话提取结果解析失败, window={}", task.window);
+                return new ArrayList<>();
+            }
+            windowResultList.add(task.rangeList);
+        }
+
+        List<SessionRange> rangeList = merge(recordIndex.size(), windowList, windowResultList);
+        log.info("分窗口会话提取完成, 记录数量={}, 窗口数量={}, 会话数量={}", recordIndex.size(), windowList.size(), rangeList.size());
+        return rangeList;
+    }
+
+    /**
+     * 提取指定记录范围内的会话
+     * @param recordIndex 对话记录索引
+     * @param startNo 起始记录序号
+     * @param endNo 结束记录序号
+     * @param usageKey 用量统计 key
+     * @return 会话范围列表，模型返回无法解析时为 null
+     */
+    private List<SessionRange> extract(DialogueRecordIndex recordIndex, int startNo, int endNo, String usageKey) {
+        // 获取系统提示词
+        String systemPrompt = promptService.getSessionExtractionPrompt("");
+
+        // 调用AI
+        JSONArray jsonArray;
+        try {
+            jsonArray = structuredOutputParser.callArray(chatClient, systemPrompt, recordIndex.numberedContent(startNo, endNo), usageKey);
+        } catch (StructuredOutputException e) {
+            return null;
+        }
+        List<SessionRange> rangeList = new ArrayList<>();
+        for (Object session : jsonArray) {
+            JSONObject sessionJson = (JSONObject) session;
+            int startIndex = sessionJson.getIntValue("startIndex");
+            int endIndex = sessionJson.getIntValue("endIndex");
+            if (startIndex < startNo || endIndex > endNo || startIndex > endIndex) {
+                log.warn("会话索引越界, startIndex={}, endIndex={}, 记录范围={}-{}", startIndex, endIndex, startNo, endNo);
+                continue;
+            }
+            rangeList.add(new SessionRange(startIndex, endIndex));
+        }
+        return rangeList;
+    }
+
+    /**
+     * 按 token 预算和记录数上限切分窗口，相邻窗口重叠若干条记录
+     * @param recordIndex 对话记录索引
+     * @return 窗口列表（起止记录序号）
+     */
+    private List<SessionRange> buildWindows(DialogueRecordIndex recordIndex) {
+        int size = recordIndex.size();
+        int[] recordTokens = new int[size + 1];
+        for (int no = 1; no <= size; no++) {
+            recordTokens[no] = tokenCountEstimator.estimate(recordIndex.record(no));
+        }
+        int overlap = Math.max(1, segmentConfig.getWindowOverlapRecords());
+
+        List<SessionRange> windowList = new ArrayList<>();
+        int start = 1;
+        while (true) {
+            int end = start;
+            long tokens = recordTokens[start];
+            while (end < size && end - start + 1 < segmentConfig.getWindowMaxRecords()
+                    && tokens + recordTokens[end + 1] <= segmentConfig.getWindowMaxTokens()) {
+                end++;
+                tokens += recordTokens[end];
+            }
+            windowList.add(new SessionRange(start, end));
+            if (end == size) {
+                return windowList;
+            }
+            start = Math.max(start + 1, end - overlap + 1);
+        }
+    }
+
+    /**
+     * 合并各窗口的提取结果：重叠区域以中点为界，前半归前一窗口、后半归后一窗口，
+     * 每条记录是否为会话起点由其所属窗口决定，未被判为起点的记录延续前一会话，
+     * 因此跨窗口的会话会自然合并
+     * @param size 记录数量
+     * @param windowList 窗口列表
+     * @param windowResultList 各窗口的会话范围
+     * @return 合并后的会话范围列表
+     */
+    private List<SessionRange> merge(int size, List<SessionRange> windowList, List<List<SessionRange>> windowResultList) {
+        boolean[] sessionStart = new boolean[size + 1];
+        sessionStart[1] = true;
+        int ownFrom = 1;
+        for (int i = 0; i < windowList.size(); i++) {
+            int ownTo = size;
+            if (i + 1 < windowList.size()) {
+                SessionRange next = windowList.get(i + 1);
+                int overlapLength = windowList.get(i).endNo() - next.startNo() + 1;
+                ownTo = next.startNo() + (overlapLength + 1) / 2 - 1;
+            }
+            for (SessionRange range : windowResultList.get(i)) {
+                if (range.startNo() >= ownFrom && range.startNo() <= ownTo) {
+                    sessionStart[range.startNo()] = true;
+                }
+            }
+            ownFrom = ownTo + 1;
+        }
+
+        List<SessionRange> rangeList = new ArrayList<>();
+        int start = 1;
+        for (int no = 2; no <= size; no++) {
+            if (sessionStart[no]) {
+                rangeList.add(new SessionRange(start, no - 1));
+                start = no;
+            }
+        }
+        rangeList.add(new SessionRange(start, size));
+        return rangeList;
+    }
+
+    /**
+     * 单个窗口的提取任务
+     */
+    private static final class WindowTask {
+        private final SessionRange window;
+        private List<SessionRange> rangeList;
+        private Exception error;
+
+        private WindowTask(SessionRange window) {
+            this.window = window;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.review.agent.graph.segment;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.review.agent.common.exception.AnalysisCancelledException;
+import com.review.agent.config.SessionSegmentConfig;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import com.review.agent.graph.support.SessionTaskRunner;
+import com.review.agent.graph.support.StructuredOutputParser;
+import com.review.agent.service.PromptService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.review.agent.config.MultiLLMConfig.EXTRACT_MODEL;
+
+/**
+ * 本地会话拆分：按相邻对话记录的词汇余弦相似度合并或拆分，
+ * 只有相似度落在两个阈值之间（或记录过短）的模糊边界才交给模型判断
+ */
+@Slf4j
+@Component
+public class LocalSessionSegmenter implements SessionSegmenter {
+    @Resource
+    private SessionSegmentConfig segmentConfig;
+    @Resource
+    private PromptService promptService;
+    @Resource(name = "extractChatClient")
+    private ChatClient chatClient;
+    @Resource
+    private SessionTaskRunner sessionTaskRunner;
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    /**
+     * 与前一会话比较时参考的前序记录数量
+     */
+    private static final int CONTEXT_RECORDS = 2;
+
+    /**
+     * 对话中高频但不区分主题的词
+     */
+    private static final Set<String> STOP_TOKENS = Set.of(
+            "用户", "ai", "assistant", "user", "什么", "一个", "这个", "那个", "可以", "我们", "你们", "如何",
+            "怎么", "是否", "需要", "的是", "一下", "请问", "谢谢", "没有", "现在", "时候", "the", "is", "to", "and", "of");
+
+    @Override
+    public List<SessionRange> segment(DialogueRecordIndex recordIndex, String usageKey, boolean background) {
+        int size = recordIndex.size();
+        List<SessionRange> rangeList = new ArrayList<>();
+        if (size == 0) {
+            return rangeList;
+        }
+        if (size == 1) {
+            rangeList.add(new SessionRange(1, 1));
+            return rangeList;
+        }
+
+        List<Map<String, Integer>> termList = new ArrayList<>(size);
+        for (int no = 1; no <= size; no++) {
+            termList.add(tokenize(recordIndex.record(no)));
+        }
+
+        // sameSession[no] 表示第 no 条记录是否与第 no-1 条属于同一会话
+        Boolean[] sameSession = new Boolean[size + 1];
+        double[] similarity = new double[size + 1];
+        List<Integer> ambiguousList = new ArrayList<>();
+        for (int no = 2; no <= size; no++) {
+            Map<String, Integer> current = termList.get(no - 1);
+            Map<String, Integer> context = new HashMap<>();
+            for (int prev = Math.max(1, no - CONTEXT_RECORDS); prev < no; prev++) {
+                termList.get(prev - 1).forEach((term, count) -> context.merge(term, count, Integer::sum));
+            }
+            similarity[no] = cosine(context, current);
+
+            int tokenCount = current.values().stream().mapToInt(Integer::intValue).sum();
+            if (tokenCount < segmentConfig.getMinTokens()) {
+                ambiguousList.add(no);
+            } else if (similarity[no] >= segmentConfig.getMergeThreshold()) {
+                sameSession[no] = true;
+            } else if (similarity[no] < segmentConfig.getSplitThreshold()) {
+                sameSession[no] = false;
+            } else {
+                ambiguousList.add(no);
+            }
+        }
+
+        if (!ambiguousList.isEmpty()) {
+            Map<Integer, Boolean> judgeMap = segmentConfig.isLlmFallback()
+                    ? judgeByLlm(recordIndex, ambiguousList, usageKey, background) : Map.of();
+            double midpoint = (segmentConfig.getMergeThreshold() + segmentConfig.getSplitThreshold()) / 2;
+            for (Integer no : ambiguousList) {
+                sameSession[no] = judgeMap.getOrDefault(no, similarity[no] >= midpoint);
+            }
+        }
+
+        int start = 1;
+        for (int no = 2; no <= size; no++) {
+            if (!sameSession[no]) {
+                rangeList.add(new SessionRange(start, no - 1));
+                start = no;
+            }
+        }
+        rangeList.add(new SessionRange(start, size));
+        log.info("本地会话拆分完成, 记录数量={}, 会话数量={}, 模糊边界={}", size, rangeList.size(), ambiguousList.size());
+        return rangeList;
+    }
+
+    /**
+     * 由模型判断模糊边界，一次调用只携带边界两侧的记录；边界较多时按 token 预算分组并行判断
+     * @return <记录序号, 是否与前一条属于同一会话>，调用失败的分组不在结果中
+     */
+    private Map<Integer, Boolean> judgeByLlm(DialogueRecordIndex recordIndex, List<Integer> ambiguousList, String usageKey,
+                                             boolean background) {
+        int maxChars = segmentConfig.getBoundaryMaxChars();
+        List<String> groupList = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        int groupTokens = 0;
+        for (Integer no : ambiguousList) {
+            String boundary = "[边界 " + no + "]\n"
+                    + "前一条记录：\n" + truncate(recordIndex.record(no - 1), maxChars) + "\n"
+                    + "后一条记录：\n" + truncate(recordIndex.record(no), maxChars) + "\n\n";
+            int boundaryTokens = tokenCountEstimator.estimate(boundary);
+            if (!sb.isEmpty() && groupTokens + boundaryTokens > segmentConfig.getWindowMaxTokens()) {
+                groupList.add(sb.toString());
+                sb.setLength(0);
+                groupTokens = 0;
+            }
+            sb.append(boundary);
+            groupTokens += boundaryTokens;
+        }
+        groupList.add(sb.toString());
+
+        Map<Integer, Boolean> judgeMap = new ConcurrentHashMap<>();
+        sessionTaskRunner.runAll(EXTRACT_MODEL, background, groupList, group -> {
+            try {
+                JSONArray jsonArray = structuredOutputParser.callArray(chatClient, promptService.getSessionBoundaryPrompt(), group, usageKey);
+                for (Object item : jsonArray) {
+                    JSONObject json = (JSONObject) item;
+                    judgeMap.put(json.getIntValue("index"), json.getBooleanValue("sameSession"));
+                }
+            } catch (AnalysisCancelledException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("模糊边界模型判断失败，按相似度阈值处理", e);
+            }
+        });
+        return judgeMap;
+    }
+
+    /**
+     * 分词：英文/数字按单词，中文按相邻两字，跳过记录的时间标记行
+     */
+    private Map<String, Integer> tokenize(String record) {
+        Map<String, Integer> termMap = new HashMap<>();
+        int bodyStart = record.indexOf('\n');
+        String body = bodyStart < 0 ? "" : record.substring(bodyStart + 1);
+
+        StringBuilder word = new StringBuilder();
+        char prevHan = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                addTerm(termMap, word);
+                if (prevHan != 0) {
+                    addTerm(termMap, new StringBuilder().append(prevHan).append(c));
+                }
+                prevHan = c;
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                word.append(Character.toLowerCase(c));
+                prevHan = 0;
+            } else {
+                addTerm(termMap, word);
+                prevHan = 0;
+            }
+        }
+        addTerm(termMap, word);
+        return termMap;
+    }
+
+    private void addTerm(Map<String, Integer> termMap, StringBuilder term) {
+        if (term.length() >= 2) {
+            String value = term.toString();
+            if (!STOP_TOKENS.contains(value)) {
+                termMap.merge(value, 1, Integer::sum);
+            }
+        }
+        term.setLength(0);
+    }
+
+    private double cosine(Map<String, Integer> a, Map<String, Integer> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        double dot = 0;
+        for (Map.Entry<String, Integer> entry : b.entrySet()) {
+            Integer count = a.get(entry.getKey());
+            if (count != null) {
+                dot += (double) count * entry.getValue();
+            }
+        }
+        return dot / (norm(a) * norm(b));
+    }
+
+    private double norm(Map<String, Integer> termMap) {
+        double sum = 0;
+        for (Integer count : termMap.values()) {
+            sum += (double) count * count;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+    }
+}
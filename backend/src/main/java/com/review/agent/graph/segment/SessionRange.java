@@ -0,0 +1,7 @@
+package com.review.agent.graph.segment;
+
+/**
+ * 会话范围：起止对话记录序号（从1开始，均包含）
+ */
+public record SessionRange(int startNo, int endNo) {
+}
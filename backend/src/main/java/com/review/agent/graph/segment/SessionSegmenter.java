@@ -0,0 +1,20 @@
+package com.review.agent.graph.segment;
+
+import com.review.agent.graph.support.DialogueRecordIndex;
+
+import java.util.List;
+
+/**
+ * 会话拆分策略：将文件中的对话记录划分为若干会话
+ */
+public interface SessionSegmenter {
+
+    /**
+     * 拆分会话
+     * @param recordIndex 对话记录索引
+     * @param usageKey token 用量统计 key
+     * @param background 是否为后台任务，模型调用按后台任务限制并发
+     * @return 会话范围列表，按记录顺序排列
+     */
+    List<SessionRange> segment(DialogueRecordIndex recordIndex, String usageKey, boolean background);
+}
@@ -0,0 +1,128 @@
+package com.review.agent.graph.support;
+
+import com.review.agent.common.exception.AnalysisCancelledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分析任务取消：按用量统计 key（即任务）登记执行中的分析，取消时标记状态并中断正在调用模型的线程，
+ * 之后该任务的模型调用都会直接抛出 {@link AnalysisCancelledException}
+ */
+@Slf4j
+@Component
+public class AnalysisCancellation {
+
+    private final Map<String, Handle> handleMap = new ConcurrentHashMap<>();
+
+    /**
+     * 登记执行中的分析
+     * @param key 用量统计 key
+     */
+    public void register(String key) {
+        handleMap.put(key, new Handle());
+    }
+
+    /**
+     * 分析结束后移除登记
+     * @param key 用量统计 key
+     */
+    public void unregister(String key) {
+        handleMap.remove(key);
+    }
+
+    /**
+     * 取消分析，并中断该分析正在进行的模型调用
+     * @param key 用量统计 key
+     * @param timeout 是否因超时取消
+     * @return 分析是否在执行中
+     */
+    public boolean cancel(String key, boolean timeout) {
+        Handle handle = handleMap.get(key);
+        if (handle == null) {
+            return false;
+        }
+        synchronized (handle) {
+            if (handle.reason == null) {
+                handle.reason = timeout ? Reason.TIMEOUT : Reason.CANCELLED;
+                handle.threads.forEach(Thread::interrupt);
+                log.info("分析已{}, key: {}, 中断模型调用: {}", timeout ? "超时" : "取消", key, handle.threads.size());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否已取消
+     * @param key 用量统计 key
+     */
+    public boolean isCancelled(String key) {
+        Handle handle = key == null ? null : handleMap.get(key);
+        return handle != null && handle.reason != null;
+    }
+
+    /**
+     * 是否因超时取消
+     * @param key 用量统计 key
+     */
+    public boolean isTimeout(String key) {
+        Handle handle = key == null ? null : handleMap.get(key);
+        return handle != null && handle.reason == Reason.TIMEOUT;
+    }
+
+    /**
+     * 已取消时抛出异常
+     * @param key 用量统计 key
+     */
+    public void checkCancelled(String key) {
+        Handle handle = key == null ? null : handleMap.get(key);
+        if (handle != null && handle.reason != null) {
+            throw new AnalysisCancelledException("analysis " + handle.reason.name().toLowerCase() + ", key: " + key,
+                    handle.reason == Reason.TIMEOUT);
+        }
+    }
+
+    /**
+     * 当前线程开始调用模型，取消时会被中断
+     * @param key 用量统计 key
+     */
+    public void enter(String key) {
+        Handle handle = handleMap.get(key);
+        if (handle == null) {
+            return;
+        }
+        synchronized (handle) {
+            checkCancelled(key);
+            handle.threads.add(Thread.currentThread());
+        }
+    }
+
+    /**
+     * 当前线程结束模型调用，清除取消时留下的中断标记，避免影响线程池中的后续任务
+     * @param key 用量统计 key
+     */
+    public void exit(String key) {
+        Handle handle = handleMap.get(key);
+        if (handle == null) {
+            return;
+        }
+        synchronized (handle) {
+            handle.threads.remove(Thread.currentThread());
+            if (handle.reason != null) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private enum Reason {
+        CANCELLED, TIMEOUT
+    }
+
+    private static final class Handle {
+        private volatile Reason reason;
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,140 @@
+package com.review.agent.graph.support;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对话记录索引：一次扫描文件内容，记录每个对话记录（以“# yyyy-MM-dd HH:mm:ss”开头）的起止字符偏移，
+ * 之后按记录序号（从1开始）截取会话内容均为 O(1)
+ */
+public final class DialogueRecordIndex {
+
+    /**
+     * 对话记录起始标记
+     */
+    private static final Pattern RECORD_HEADER = Pattern.compile("(?m)^\\s*#\\s+\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2}");
+
+    private final String content;
+    private final int[] starts;
+    private final int[] ends;
+
+    private DialogueRecordIndex(String content, int[] starts, int[] ends) {
+        this.content = content;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * 构建索引
+     * @param content 文件内容
+     * @return 对话记录索引
+     */
+    public static DialogueRecordIndex of(String content) {
+        if (content == null || content.isBlank()) {
+            return new DialogueRecordIndex("", new int[0], new int[0]);
+        }
+        int[] starts = new int[16];
+        int size = 0;
+        Matcher matcher = RECORD_HEADER.matcher(content);
+        while (matcher.find()) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            starts[size++] = matcher.start();
+        }
+        // 没有时间标记时整个文件视为一个对话记录
+        if (size == 0) {
+            return new DialogueRecordIndex(content, new int[]{0}, new int[]{content.length()});
+        }
+        starts = Arrays.copyOf(starts, size);
+        int[] ends = new int[size];
+        for (int i = 0; i < size - 1; i++) {
+            ends[i] = starts[i + 1];
+        }
+        ends[size - 1] = content.length();
+        return new DialogueRecordIndex(content, starts, ends);
+    }
+
+    /**
+     * 对话记录数量
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * 判断记录序号是否合法
+     * @param recordNo 记录序号（从1开始）
+     */
+    public boolean contains(int recordNo) {
+        return recordNo >= 1 && recordNo <= starts.length;
+    }
+
+    /**
+     * 对话记录的起始字符偏移
+     * @param recordNo 记录序号（从1开始）
+     */
+    public int start(int recordNo) {
+        return starts[recordNo - 1];
+    }
+
+    /**
+     * 对话记录的结束字符偏移（不包含）
+     * @param recordNo 记录序号（从1开始）
+     */
+    public int end(int recordNo) {
+        return ends[recordNo - 1];
+    }
+
+    /**
+     * 查找第一个起始偏移不小于指定偏移的记录（二分查找）
+     * @param offset 字符偏移
+     * @return 记录序号（从1开始），不存在时返回 size() + 1
+     */
+    public int firstRecordFrom(int offset) {
+        int index = Arrays.binarySearch(starts, offset);
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    /**
+     * 单个对话记录内容
+     * @param recordNo 记录序号（从1开始）
+     */
+    public String record(int recordNo) {
+        return content.substring(start(recordNo), end(recordNo));
+    }
+
+    /**
+     * 截取连续的对话记录作为会话内容
+     * @param startNo 起始记录序号（从1开始）
+     * @param endNo 结束记录序号（包含）
+     */
+    public String slice(int startNo, int endNo) {
+        return content.substring(start(startNo), end(endNo));
+    }
+
+    /**
+     * 构建带序号的文件内容，每个对话记录前标注“[#序号]”，供会话提取提示词使用
+     */
+    public String numberedContent() {
+        return starts.length == 0 ? "" : numberedContent(1, starts.length);
+    }
+
+    /**
+     * 构建连续对话记录的带序号内容，序号与整个文件一致
+     * @param startNo 起始记录序号（从1开始）
+     * @param endNo 结束记录序号（包含）
+     */
+    public String numberedContent(int startNo, int endNo) {
+        StringBuilder sb = new StringBuilder(end(endNo) - start(startNo) + (endNo - startNo + 1) * 8);
+        for (int i = startNo - 1; i < endNo; i++) {
+            sb.append("[#").append(i + 1).append("]\n");
+            sb.append(content, starts[i], ends[i]);
+            if (content.charAt(ends[i] - 1) != '\n') {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
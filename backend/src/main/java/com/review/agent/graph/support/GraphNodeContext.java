@@ -0,0 +1,68 @@
+package com.review.agent.graph.support;
+
+/**
+ * 当前线程正在执行的工作流节点，用于按节点统计模型调用。
+ * 由 {@link TimedNodeAction} 在节点执行期间设置，{@link SessionTaskRunner} 传递给会话任务线程
+ */
+public final class GraphNodeContext {
+
+    /**
+     * ChatClient 请求上下文中的节点名称 key
+     */
+    public static final String NODE_KEY = "graphNode";
+
+    /**
+     * 不在工作流节点内的调用（如报告生成）
+     */
+    public static final String NONE = "none";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private GraphNodeContext() {
+    }
+
+    /**
+     * 当前节点名称
+     * @return 节点名称，不在节点内时为 {@link #NONE}
+     */
+    public static String current() {
+        String node = CURRENT.get();
+        return node == null ? NONE : node;
+    }
+
+    /**
+     * 包装任务，在执行任务的线程上沿用提交时的节点
+     * @param task 任务
+     * @return 包装后的任务
+     */
+    public static Runnable wrap(Runnable task) {
+        String node = CURRENT.get();
+        return () -> {
+            String previous = enter(node);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 进入节点
+     * @param node 节点名称
+     * @return 之前的节点，退出时传给 {@link #restore(String)}
+     */
+    static String enter(String node) {
+        String previous = CURRENT.get();
+        CURRENT.set(node);
+        return previous;
+    }
+
+    static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.review.agent.graph.support;
+
+import java.lang.reflect.RecordComponent;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 预期的 JSON 结构：根节点类型，以及对象的顶层字段类型或数组的元素类型，用于提前发现模型输出格式错误
+ * @param root 根节点类型
+ * @param fields 顶层字段类型（根节点为对象时）
+ * @param element 元素类型（根节点为数组时）
+ */
+record JsonShape(Kind root, Map<String, Kind> fields, Kind element) {
+
+    /**
+     * 数组结构
+     * @param element 元素类型
+     */
+    static JsonShape array(Kind element) {
+        return new JsonShape(Kind.ARRAY, Map.of(), element);
+    }
+
+    /**
+     * 按 record 的字段生成对象结构，非 record 类型只校验根节点
+     * @param type 结果类型
+     */
+    static JsonShape of(Class<?> type) {
+        Map<String, Kind> fieldMap = new HashMap<>();
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                fieldMap.put(component.getName(), kindOf(component.getType()));
+            }
+        }
+        return new JsonShape(Kind.OBJECT, fieldMap, null);
+    }
+
+    Kind field(String name) {
+        return name == null ? null : fields.get(name);
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == String.class) {
+            return Kind.STRING;
+        }
+        if (type.isArray() || Collection.class.isAssignableFrom(type)) {
+            return Kind.ARRAY;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return Kind.BOOLEAN;
+        }
+        if (Number.class.isAssignableFrom(type) || type.isPrimitive()) {
+            return Kind.NUMBER;
+        }
+        return Kind.OBJECT;
+    }
+
+    enum Kind {
+        OBJECT('{'), ARRAY('['), STRING('"'), NUMBER('0'), BOOLEAN('t'), NULL('n');
+
+        private final char opener;
+
+        Kind(char opener) {
+            this.opener = opener;
+        }
+
+        char opener() {
+            return opener;
+        }
+
+        /**
+         * 是否接受实际的值类型：null 总是接受，数字、布尔值允许以字符串形式给出
+         */
+        boolean accepts(Kind actual) {
+            return actual == this || actual == NULL
+                    || ((this == NUMBER || this == BOOLEAN) && actual == STRING);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.review.agent.graph.support;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.service.AnalysisResultWriter;
+import jakarta.annotation.Resource;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.review.agent.graph.support.SessionProgressStore.CHECKPOINT_KEY;
+
+/**
+ * 节点内逐会话调用模型的公共流程：恢复中断前已完成的会话，并发处理其余会话，
+ * 每个会话完成后先保存结果再记录进度，最后补存复用或恢复的会话
+ */
+@Component
+public class SessionAnalysisRunner {
+    @Resource
+    private SessionTaskRunner sessionTaskRunner;
+    @Resource
+    private SessionProgressStore sessionProgressStore;
+    @Resource
+    private AnalysisResultWriter analysisResultWriter;
+
+    /**
+     * 恢复节点进度，返回仍需调用模型的会话；复用了已有结果的会话、任务中断前已完成的会话不再调用模型
+     * @param state 工作流状态
+     * @param stage 节点名称
+     * @param nodeDtoList 会话列表，已完成的会话结果会写回
+     * @return 待处理的会话
+     */
+    public List<NodeExecuteDto> restorePending(OverAllState state, String stage, List<NodeExecuteDto> nodeDtoList) {
+        Set<NodeExecuteDto> restoredSet = sessionProgressStore.restore(checkpointId(state), stage, nodeDtoList);
+        return nodeDtoList.stream()
+                .filter(dto -> !Boolean.TRUE.equals(dto.getReused()) && !restoredSet.contains(dto))
+                .toList();
+    }
+
+    /**
+     * 记录一个会话在指定节点的结果
+     * @param state 工作流状态
+     * @param stage 节点名称
+     * @param dto 会话结果
+     */
+    public void saveProgress(OverAllState state, String stage, NodeExecuteDto dto) {
+        sessionProgressStore.save(checkpointId(state), stage, dto);
+    }
+
+    /**
+     * 是否为后台任务（批量分析），后台任务只占用部分模型并发，保证交互任务的响应
+     * @param state 工作流状态
+     * @return 是否后台任务
+     */
+    public boolean isBackground(OverAllState state) {
+        return state.value("background").map(value -> Boolean.parseBoolean(value.toString())).orElse(false);
+    }
+
+    /**
+     * 并发处理待处理的会话并保存分析结果
+     * @param state 工作流状态
+     * @param stage 节点名称
+     * @param model 调用的模型，用于限制并发
+     * @param nodeDtoList 会话列表
+     * @param task 单个会话的处理逻辑，结果直接写回会话对象，需自行处理业务异常
+     */
+    public void analyzeAndPersist(OverAllState state, String stage, String model, List<NodeExecuteDto> nodeDtoList,
+                                  Consumer<NodeExecuteDto> task) {
+        boolean persistResult = state.value("persistResult").map(value -> Boolean.parseBoolean(value.toString())).orElse(true);
+        List<Document> vectorBuffer = analysisResultWriter.newVectorBuffer();
+        List<NodeExecuteDto> pendingList = restorePending(state, stage, nodeDtoList);
+        sessionTaskRunner.runAll(model, isBackground(state), pendingList, result -> {
+            task.accept(result);
+            // 会话分析完成即保存并推送，再记录进度，恢复时不会重复保存
+            if (persistResult) {
+                analysisResultWriter.persist(result, vectorBuffer);
+            }
+            saveProgress(state, stage, result);
+        });
+        // 复用或恢复的会话没有经过上面的保存
+        if (persistResult) {
+            nodeDtoList.forEach(dto -> analysisResultWriter.persist(dto, vectorBuffer));
+            analysisResultWriter.flushVectors(vectorBuffer);
+        }
+    }
+
+    private String checkpointId(OverAllState state) {
+        return state.value(CHECKPOINT_KEY).map(Object::toString).orElse("");
+    }
+}
@@ -0,0 +1,99 @@
+package com.review.agent.graph.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.review.agent.entity.dto.NodeExecuteDto;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 会话级进度：图检查点只在节点结束后保存，节点内每完成一个会话就把结果记到 Redis，
+ * 任务中断后恢复时已完成的会话直接取回，不再重复调用模型
+ */
+@Slf4j
+@Component
+public class SessionProgressStore {
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 工作流状态中的检查点线程ID
+     */
+    public static final String CHECKPOINT_KEY = "checkpointId";
+
+    private static final String KEY_PREFIX = "analysis-progress:";
+    private static final Duration EXPIRE = Duration.ofDays(7);
+
+    /**
+     * 记录一个会话在指定节点的结果
+     * @param checkpointId 检查点线程ID，为空时忽略
+     * @param stage 节点名称
+     * @param dto 会话结果
+     */
+    public void save(String checkpointId, String stage, NodeExecuteDto dto) {
+        if (checkpointId == null || checkpointId.isBlank()) {
+            return;
+        }
+        try {
+            RMap<String, String> map = redissonClient.getMap(KEY_PREFIX + checkpointId, StringCodec.INSTANCE);
+            map.put(stage + ":" + dto.getSessionStart(), objectMapper.writeValueAsString(dto));
+            map.expire(EXPIRE);
+        } catch (Exception e) {
+            log.warn("保存会话进度失败, checkpointId: {}", checkpointId, e);
+        }
+    }
+
+    /**
+     * 将指定节点已完成的会话结果写回会话列表（按会话起止偏移匹配）
+     * @param checkpointId 检查点线程ID
+     * @param stage 节点名称
+     * @param nodeDtoList 会话列表
+     * @return 已完成的会话（按对象引用判断）
+     */
+    public Set<NodeExecuteDto> restore(String checkpointId, String stage, List<NodeExecuteDto> nodeDtoList) {
+        Set<NodeExecuteDto> restoredSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (checkpointId == null || checkpointId.isBlank()) {
+            return restoredSet;
+        }
+        Map<String, String> map = redissonClient.<String, String>getMap(KEY_PREFIX + checkpointId, StringCodec.INSTANCE).readAllMap();
+        if (map.isEmpty()) {
+            return restoredSet;
+        }
+        for (NodeExecuteDto dto : nodeDtoList) {
+            String json = map.get(stage + ":" + dto.getSessionStart());
+            if (json == null) {
+                continue;
+            }
+            try {
+                NodeExecuteDto saved = objectMapper.readValue(json, NodeExecuteDto.class);
+                if (Objects.equals(saved.getSessionEnd(), dto.getSessionEnd())) {
+                    BeanUtils.copyProperties(saved, dto);
+                    restoredSet.add(dto);
+                }
+            } catch (Exception e) {
+                log.warn("读取会话进度失败, checkpointId: {}", checkpointId, e);
+            }
+        }
+        if (!restoredSet.isEmpty()) {
+            log.info("从会话进度恢复 {} 个会话, checkpointId: {}, stage: {}", restoredSet.size(), checkpointId, stage);
+        }
+        return restoredSet;
+    }
+
+    /**
+     * 清除会话进度
+     * @param checkpointId 检查点线程ID
+     */
+    public void clear(String checkpointId) {
+        redissonClient.getMap(KEY_PREFIX + checkpointId, StringCodec.INSTANCE).delete();
+    }
+}
@@ -0,0 +1,199 @@
+package com.review.agent.graph.support;
+
+import com.review.agent.common.exception.AnalysisCancelledException;
+import com.review.agent.config.AdaptiveConcurrencyLimiter;
+import com.review.agent.config.AnalysisConcurrencyConfig;
+import com.review.agent.config.LlmLimiterConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static com.review.agent.config.MultiLLMConfig.LOCAL_MODEL;
+
+/**
+ * 会话任务执行器：同一模型的调用共享一个并发上限，节点内的会话并发执行并等待全部完成；
+ * 后台任务额外受后台并发上限约束，保证交互任务总有可用的模型并发；
+ * 有交互任务在等待某个模型的并发时，后台任务暂停获取该模型的并发，已占用的并发随调用结束逐步让给交互任务
+ */
+@Slf4j
+@Component
+public class SessionTaskRunner {
+    @Resource
+    private AnalysisConcurrencyConfig concurrencyConfig;
+    @Resource
+    private LlmLimiterConfig limiterConfig;
+    @Resource
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    @Resource(name = "sessionTaskExecutor")
+    private ThreadPoolTaskExecutor sessionTaskExecutor;
+
+    /**
+     * 每个模型的并发许可
+     */
+    private final Map<String, ModelPermits> modelPermits = new ConcurrentHashMap<>();
+
+    /**
+     * 后台任务等待许可时重新检查份额的间隔（毫秒）
+     */
+    private static final long BACKGROUND_RECHECK_MILLIS = 200;
+
+    /**
+     * 并发执行每个会话的任务，所有任务结束后返回
+     * @param model 任务调用的模型，用于限制并发
+     * @param items 会话列表
+     * @param task 单个会话的处理逻辑，需自行处理业务异常
+     */
+    public <T> void runAll(String model, List<T> items, Consumer<T> task) {
+        runAll(model, false, items, task);
+    }
+
+    /**
+     * 并发执行每个会话的任务，所有任务结束后返回
+     * @param model 任务调用的模型，用于限制并发
+     * @param background 是否为后台任务，后台任务只能占用部分模型并发，其余留给交互任务
+     * @param items 会话列表
+     * @param task 单个会话的处理逻辑，需自行处理业务异常
+     * @throws AnalysisCancelledException 任务被取消
+     */
+    public <T> void runAll(String model, boolean background, List<T> items, Consumer<T> task) {
+        ModelPermits modelPermit = modelPermits.computeIfAbsent(model, ModelPermits::new);
+
+        List<CompletableFuture<Void>> futureList = new ArrayList<>(items.size());
+        AtomicReference<AnalysisCancelledException> cancelled = new AtomicReference<>();
+        RejectedExecutionException rejected = null;
+        for (T item : items) {
+            // 任务已取消时不再提交剩余会话
+            if (cancelled.get() != null) {
+                break;
+            }
+            try {
+                modelPermit.acquire(background);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("session task interrupted", e);
+            }
+            CompletableFuture<Void> submitted;
+            try {
+                submitted = CompletableFuture.runAsync(GraphNodeContext.wrap(() -> task.accept(item)), sessionTaskExecutor);
+            } catch (RejectedExecutionException e) {
+                // 线程池拒绝时任务不会执行，立即归还许可，等已提交的会话结束后再抛出
+                modelPermit.release(background);
+                rejected = e;
+                break;
+            }
+            CompletableFuture<Void> future = submitted
+                    .whenComplete((v, e) -> {
+                        modelPermit.release(background);
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof AnalysisCancelledException cancelledException) {
+                            cancelled.compareAndSet(null, cancelledException);
+                        } else if (e != null) {
+                            log.error("会话任务执行异常, model: {}", model, e);
+                        }
+                    });
+            futureList.add(future);
+        }
+
+        // 等待全部完成，单个任务异常不影响其它会话
+        CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0]))
+                .exceptionally(e -> null)
+                .join();
+        if (cancelled.get() != null) {
+            throw cancelled.get();
+        }
+        if (rejected != null) {
+            throw rejected;
+        }
+    }
+
+    /**
+     * 单个模型的并发许可：全部许可、执行中的后台任务数量，以及正在等待许可的交互任务数量。
+     * 启用自适应并发限制时实际并发由其决定，许可数按其上限设置，后台份额按其当前上限计算，
+     * 有调用在等待自适应并发名额时不再放行后台任务
+     */
+    private final class ModelPermits {
+        private final Semaphore permits;
+        private final int backgroundParallelism;
+        private int interactiveWaiting;
+        private int backgroundRunning;
+        private final boolean adaptive;
+
+        private ModelPermits(String model) {
+            // 本地模型的调用不经过自适应并发限制，按配置的并发上限
+            this.adaptive = concurrencyLimiter.isEnabled() && !LOCAL_MODEL.equals(model);
+            int parallelism = adaptive ? limiterConfig.getMaxLimit() : concurrencyConfig.getParallelism(model);
+            this.permits = new Semaphore(parallelism, true);
+            this.backgroundParallelism = concurrencyConfig.getBackgroundParallelism(parallelism);
+        }
+
+        /**
+         * 获取许可：交互任务等待期间后台任务不再获取新的许可
+         * @param background 是否为后台任务
+         */
+        private void acquire(boolean background) throws InterruptedException {
+            if (!background) {
+                acquireInteractive();
+                return;
+            }
+            synchronized (this) {
+                // 自适应上限随时变化，定期重新检查
+                while (interactiveWaiting > 0 || backgroundRunning >= backgroundLimit()) {
+                    wait(BACKGROUND_RECHECK_MILLIS);
+                }
+                backgroundRunning++;
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                releaseBackground();
+                throw e;
+            }
+        }
+
+        private void release(boolean background) {
+            permits.release();
+            if (background) {
+                releaseBackground();
+            }
+        }
+
+        private void acquireInteractive() throws InterruptedException {
+            synchronized (this) {
+                interactiveWaiting++;
+            }
+            try {
+                permits.acquire();
+            } finally {
+                synchronized (this) {
+                    if (--interactiveWaiting == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        private synchronized void releaseBackground() {
+            backgroundRunning--;
+            notifyAll();
+        }
+
+        private int backgroundLimit() {
+            if (!adaptive) {
+                return backgroundParallelism;
+            }
+            return concurrencyLimiter.hasWaiting() ? 0 : concurrencyConfig.getBackgroundParallelism(concurrencyLimiter.currentLimit());
+        }
+    }
+}
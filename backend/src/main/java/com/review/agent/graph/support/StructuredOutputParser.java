@@ -0,0 +1,168 @@
+package com.review.agent.graph.support;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.review.agent.common.exception.StructuredOutputException;
+import com.review.agent.config.LlmCacheAdvisor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.review.agent.config.TokenUsageTracker.USAGE_KEY;
+
+/**
+ * 结构化输出：流式调用模型，边接收边解析 JSON 并修复常见格式问题（代码块标记、多余文字、未转义引号、截断），
+ * 结构明显不符时提前中止本次调用并重试，减少整次分析因格式错误而失败
+ */
+@Slf4j
+@Component
+public class StructuredOutputParser {
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private AnalysisCancellation analysisCancellation;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 输出格式错误时的最大调用次数
+     */
+    @Value("${analysis.structured-output.max-attempts:2}")
+    private int maxAttempts;
+
+    /**
+     * 调用模型并解析为指定类型
+     * @param chatClient 模型客户端
+     * @param systemPrompt 系统提示词
+     * @param userContent 用户内容
+     * @param usageKey 用量统计 key
+     * @param type 结果类型（record 会按字段校验类型）
+     * @return 解析结果，多次调用仍无法解析时抛出 {@link StructuredOutputException}
+     */
+    public <T> T call(ChatClient chatClient, String systemPrompt, String userContent, String usageKey, Class<T> type) {
+        JsonShape shape = JsonShape.of(type);
+        return callWithRetry(chatClient, systemPrompt, userContent, usageKey, shape, json -> objectMapper.readValue(json, type));
+    }
+
+    /**
+     * 调用模型并解析为对象数组
+     * @param chatClient 模型客户端
+     * @param systemPrompt 系统提示词
+     * @param userContent 用户内容
+     * @param usageKey 用量统计 key
+     * @return 解析结果，多次调用仍无法解析时抛出 {@link StructuredOutputException}
+     */
+    public JSONArray callArray(ChatClient chatClient, String systemPrompt, String userContent, String usageKey) {
+        JsonShape shape = JsonShape.array(JsonShape.Kind.OBJECT);
+        return callWithRetry(chatClient, systemPrompt, userContent, usageKey, shape, JSON::parseArray);
+    }
+
+    /**
+     * 修复并解析完整的模型输出（非流式调用）
+     * @param content 模型输出
+     * @return JSON 对象，没有找到 JSON 时为 null
+     */
+    public JSONObject parseObject(String content) {
+        String json = repair(content, JsonShape.of(Object.class));
+        return json == null ? null : JSON.parseObject(json);
+    }
+
+    /**
+     * 修复并解析完整的模型输出（非流式调用）
+     * @param content 模型输出
+     * @return JSON 数组，没有找到 JSON 时为 null
+     */
+    public JSONArray parseArray(String content) {
+        String json = repair(content, JsonShape.array(JsonShape.Kind.OBJECT));
+        return json == null ? null : JSON.parseArray(json);
+    }
+
+    private String repair(String content, JsonShape shape) {
+        TolerantJsonScanner scanner = new TolerantJsonScanner(shape);
+        scanner.feed(content);
+        String json = scanner.finish();
+        record(json == null ? "failed" : scanner.isRepaired() ? "repaired" : "ok");
+        return json;
+    }
+
+    private <T> T callWithRetry(ChatClient chatClient, String systemPrompt, String userContent, String usageKey,
+                                JsonShape shape, JsonReader<T> reader) {
+        StructuredOutputException lastError = null;
+        for (int attempt = 1; attempt <= Math.max(1, maxAttempts); attempt++) {
+            // 解析成功后才写入响应缓存，格式错误的响应从缓存中删除，重试时不读取缓存
+            LlmCacheAdvisor.CacheCommit cacheCommit = new LlmCacheAdvisor.CacheCommit();
+            try {
+                String json = stream(chatClient, systemPrompt, userContent, usageKey, shape, cacheCommit, attempt > 1);
+                T result;
+                try {
+                    result = reader.read(json);
+                } catch (Exception e) {
+                    record("failed");
+                    throw new StructuredOutputException("malformed model output: " + e.getMessage());
+                }
+                cacheCommit.commit();
+                return result;
+            } catch (StructuredOutputException e) {
+                cacheCommit.evict();
+                lastError = e;
+                log.warn("模型输出格式错误, 第 {} 次, {}", attempt, e.getMessage());
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * 流式调用模型，边接收边扫描，结构不符时抛出异常中止流
+     * @param cacheCommit 延迟写入的响应缓存
+     * @param bypassCache 是否跳过响应缓存
+     * @return 修复后的 JSON
+     */
+    private String stream(ChatClient chatClient, String systemPrompt, String userContent, String usageKey, JsonShape shape,
+                          LlmCacheAdvisor.CacheCommit cacheCommit, boolean bypassCache) {
+        TolerantJsonScanner scanner = new TolerantJsonScanner(shape);
+        // 登记当前线程，取消任务时中断阻塞等待
+        analysisCancellation.enter(usageKey);
+        try {
+            chatClient.prompt()
+                    .system(systemPrompt)
+                    .user(userContent)
+                    .advisors(a -> a.param(USAGE_KEY, usageKey)
+                            .param(GraphNodeContext.NODE_KEY, GraphNodeContext.current())
+                            .param(LlmCacheAdvisor.COMMIT_KEY, cacheCommit)
+                            .param(LlmCacheAdvisor.BYPASS_KEY, bypassCache))
+                    .stream()
+                    .content()
+                    .doOnNext(scanner::feed)
+                    .blockLast();
+        } catch (StructuredOutputException e) {
+            record("aborted");
+            throw e;
+        } catch (RuntimeException e) {
+            analysisCancellation.checkCancelled(usageKey);
+            throw e;
+        } finally {
+            analysisCancellation.exit(usageKey);
+        }
+        String json = scanner.finish();
+        if (json == null) {
+            record("failed");
+            throw new StructuredOutputException("no json found in model output");
+        }
+        record(scanner.isRepaired() ? "repaired" : "ok");
+        return json;
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("llm.output.parse", "result", result).increment();
+    }
+
+    @FunctionalInterface
+    private interface JsonReader<T> {
+        T read(String json) throws Exception;
+    }
+}
@@ -0,0 +1,57 @@
+package com.review.agent.graph.support;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.review.agent.common.exception.AnalysisCancelledException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+
+/**
+ * 节点指标：记录每个节点的执行耗时和异常，并在执行期间登记当前节点，使节点内的模型调用按节点统计
+ */
+public class TimedNodeAction implements NodeAction {
+
+    private final String node;
+    private final String model;
+    private final NodeAction delegate;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param node 节点名称
+     * @param model 节点主要调用的模型
+     * @param delegate 节点
+     * @param meterRegistry 指标注册表
+     */
+    public TimedNodeAction(String node, String model, NodeAction delegate, MeterRegistry meterRegistry) {
+        this.node = node;
+        this.model = model;
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        String previous = GraphNodeContext.enter(node);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "success";
+        try {
+            return delegate.apply(state);
+        } catch (Exception e) {
+            result = e instanceof AnalysisCancelledException ? "cancelled" : "failure";
+            meterRegistry.counter("analysis.node.failures", "node", node, "model", model,
+                    "type", e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("analysis.node.duration")
+                    .description("工作流节点执行耗时")
+                    .tag("node", node)
+                    .tag("model", model)
+                    .tag("result", result)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            GraphNodeContext.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.review.agent.graph.support;
+
+import com.review.agent.common.exception.StructuredOutputException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * 容错的增量 JSON 扫描器：逐段接收模型输出，边接收边输出修复后的 JSON。
+ * <ul>
+ *     <li>跳过 JSON 之前的代码块标记、说明文字，忽略 JSON 结束之后的内容</li>
+ *     <li>字符串中未转义的引号、换行等控制字符自动转义，容器末尾多余的逗号去掉</li>
+ *     <li>输出被截断时保留最后一个完整的值并补齐括号，未结束的字符串值直接闭合；根节点为数组时只保留完整的元素</li>
+ *     <li>根节点或顶层字段的类型与预期不符时立即抛出异常，调用方可以提前中止</li>
+ * </ul>
+ * 非线程安全，每次调用使用一个实例
+ */
+class TolerantJsonScanner {
+
+    /**
+     * JSON 开始前最多允许的说明文字长度，超过视为模型没有按格式输出
+     */
+    private static final int MAX_PREAMBLE_CHARS = 2000;
+
+    private final JsonShape shape;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder out = new StringBuilder();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private int pos;
+    private boolean started;
+    private boolean done;
+    private boolean repaired;
+
+    private boolean inString;
+    private boolean stringIsKey;
+    private boolean escape;
+    private boolean inLiteral;
+    private final StringBuilder keyBuffer = new StringBuilder();
+    private String currentKey;
+
+    /**
+     * 最后一个完整值之后的位置及当时需要补齐的括号，用于截断修复
+     */
+    private int safeLength;
+    private String safeClosers = "";
+
+    TolerantJsonScanner(JsonShape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * 接收一段输出
+     * @param chunk 输出片段
+     */
+    void feed(String chunk) {
+        if (chunk == null || done) {
+            return;
+        }
+        text.append(chunk);
+        advance(false);
+    }
+
+    /**
+     * 输出结束，返回修复后的 JSON
+     * @return JSON 文本，没有找到 JSON 时为 null
+     */
+    String finish() {
+        advance(true);
+        if (!started) {
+            return null;
+        }
+        if (done) {
+            return out.toString();
+        }
+        repaired = true;
+        if (inString && !stringIsKey) {
+            if (escape) {
+                out.setLength(out.length() - 1);
+            }
+            out.append('"');
+            markSafe();
+        }
+        return out.substring(0, safeLength) + safeClosers;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    boolean isRepaired() {
+        return repaired;
+    }
+
+    private void advance(boolean finished) {
+        while (pos < text.length() && !done) {
+            char c = text.charAt(pos);
+            if (!started) {
+                if (c == shape.root().opener()) {
+                    started = true;
+                    openContainer(c);
+                } else if (pos >= MAX_PREAMBLE_CHARS) {
+                    throw new StructuredOutputException("no " + shape.root() + " found in model output");
+                }
+                pos++;
+                continue;
+            }
+            if (inString) {
+                if (!scanString(c, finished)) {
+                    return;
+                }
+                continue;
+            }
+            scanStructure(c);
+            pos++;
+        }
+    }
+
+    /**
+     * 处理字符串内的字符
+     * @return 需要等待更多输出才能判断时返回 false
+     */
+    private boolean scanString(char c, boolean finished) {
+        if (escape) {
+            escape = false;
+            append(c);
+        } else if (c == '\\') {
+            escape = true;
+            append(c);
+        } else if (c == '"') {
+            Boolean closing = isClosingQuote(finished);
+            if (closing == null) {
+                return false;
+            }
+            if (closing) {
+                out.append('"');
+                inString = false;
+                if (stringIsKey) {
+                    currentKey = keyBuffer.toString();
+                } else {
+                    markSafe();
+                }
+            } else {
+                repaired = true;
+                append('\\');
+                append('"');
+            }
+        } else if (c == '\n' || c == '\r' || c == '\t') {
+            repaired = true;
+            append('\\');
+            append(c == '\n' ? 'n' : c == '\r' ? 'r' : 't');
+        } else {
+            append(c);
+        }
+        pos++;
+        return true;
+    }
+
+    private void append(char c) {
+        out.append(c);
+        if (stringIsKey && stack.size() == 1) {
+            keyBuffer.append(c);
+        }
+    }
+
+    /**
+     * 根据引号之后的内容判断它是字符串的结束还是内容中未转义的引号
+     * @return 无法判断（需要更多输出）时为 null
+     */
+    private Boolean isClosingQuote(boolean finished) {
+        int next = nextNonWhitespace(pos + 1);
+        if (next < 0) {
+            return finished ? Boolean.TRUE : null;
+        }
+        char c = text.charAt(next);
+        if (stringIsKey) {
+            return c == ':';
+        }
+        if (c == '}' || c == ']') {
+            return true;
+        }
+        if (c != ',') {
+            return false;
+        }
+        int after = nextNonWhitespace(next + 1);
+        if (after < 0) {
+            return finished ? Boolean.TRUE : null;
+        }
+        char following = text.charAt(after);
+        return stack.peek().object ? following == '"' || following == '}' : isValueStart(following) || following == ']';
+    }
+
+    private void scanStructure(char c) {
+        if (inLiteral && !isLiteralChar(c)) {
+            inLiteral = false;
+            markSafe();
+        }
+        Frame frame = stack.peek();
+        switch (c) {
+            case '"' -> {
+                stringIsKey = frame.object && frame.expectKey;
+                if (stringIsKey) {
+                    keyBuffer.setLength(0);
+                } else {
+                    beforeValue(JsonShape.Kind.STRING);
+                }
+                inString = true;
+                out.append(c);
+            }
+            case '{', '[' -> {
+                beforeValue(c == '{' ? JsonShape.Kind.OBJECT : JsonShape.Kind.ARRAY);
+                openContainer(c);
+            }
+            case '}', ']' -> closeContainer(c);
+            case ':' -> {
+                frame.expectKey = false;
+                out.append(c);
+            }
+            case ',' -> {
+                frame.expectKey = frame.object;
+                out.append(c);
+            }
+            default -> {
+                if (Character.isWhitespace(c)) {
+                    out.append(c);
+                } else if (inLiteral) {
+                    out.append(c);
+                } else if (isValueStart(c)) {
+                    beforeValue(c == 't' || c == 'f' ? JsonShape.Kind.BOOLEAN : c == 'n' ? JsonShape.Kind.NULL : JsonShape.Kind.NUMBER);
+                    inLiteral = true;
+                    out.append(c);
+                } else {
+                    // 值之间的杂散字符直接丢弃
+                    repaired = true;
+                }
+            }
+        }
+    }
+
+    private void openContainer(char c) {
+        out.append(c);
+        stack.push(new Frame(c == '{'));
+        markSafe();
+    }
+
+    private void closeContainer(char c) {
+        Frame frame = stack.peek();
+        if ((c == '}') != frame.object) {
+            // 括号不匹配，丢弃
+            repaired = true;
+            return;
+        }
+        trimTrailingComma();
+        out.append(c);
+        stack.pop();
+        if (stack.isEmpty()) {
+            done = true;
+            return;
+        }
+        markSafe();
+    }
+
+    private void trimTrailingComma() {
+        int i = out.length() - 1;
+        while (i >= 0 && Character.isWhitespace(out.charAt(i))) {
+            i--;
+        }
+        if (i >= 0 && out.charAt(i) == ',') {
+            out.deleteCharAt(i);
+            repaired = true;
+        }
+    }
+
+    /**
+     * 顶层值开始时按预期结构校验类型
+     */
+    private void beforeValue(JsonShape.Kind kind) {
+        if (stack.size() != 1) {
+            return;
+        }
+        JsonShape.Kind expected = shape.root() == JsonShape.Kind.ARRAY ? shape.element() : shape.field(currentKey);
+        if (expected != null && !expected.accepts(kind)) {
+            String path = shape.root() == JsonShape.Kind.ARRAY ? "array element" : "field " + currentKey;
+            throw new StructuredOutputException(path + " should be " + expected + " but was " + kind);
+        }
+    }
+
+    private void markSafe() {
+        if (shape.root() == JsonShape.Kind.ARRAY && stack.size() > 1) {
+            // 数组只保留完整的元素，不完整的元素整体丢弃
+            return;
+        }
+        safeLength = out.length();
+        StringBuilder closers = new StringBuilder();
+        Iterator<Frame> iterator = stack.iterator();
+        while (iterator.hasNext()) {
+            closers.append(iterator.next().object ? '}' : ']');
+        }
+        safeClosers = closers.toString();
+    }
+
+    private int nextNonWhitespace(int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValueStart(char c) {
+        return c == '"' || c == '{' || c == '[' || c == '-' || c == 't' || c == 'f' || c == 'n' || Character.isDigit(c);
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '+';
+    }
+
+    /**
+     * 容器：对象或数组，对象记录下一个字符串是否为字段名
+     */
+    private static final class Frame {
+        private final boolean object;
+        private boolean expectKey;
+
+        private Frame(boolean object) {
+            this.object = object;
+            this.expectKey = object;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.review.agent.repository;
+
+import com.review.agent.entity.pojo.AnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
+
+    /**
+     * 按优先级、提交顺序查询指定状态的任务
+     * @param status 任务状态
+     * @return 任务列表
+     */
+    @Query("select j from AnalysisJob j where j.status = :status order by j.priority asc, j.id asc")
+    List<AnalysisJob> findByStatus(Integer status);
+
+    /**
+     * 统计排在指定任务之前的排队任务数量（优先级更高或同优先级先提交）
+     * @param jobId 任务ID
+     * @param priority 任务优先级
+     * @param status 排队状态
+     * @return 排队数量
+     */
+    @Query("select count(j) from AnalysisJob j where j.status = :status and (j.priority < :priority or (j.priority = :priority and j.id < :jobId))")
+    long countAhead(Long jobId, Integer priority, Integer status);
+
+    @Query("select j from AnalysisJob j where j.userId = :userId order by j.id desc")
+    List<AnalysisJob> findByUserId(Long userId);
+
+    /**
+     * 查询文件指定状态的任务
+     * @param fileId 文件ID
+     * @param statuses 任务状态
+     * @return 任务列表，最新的在前
+     */
+    @Query("select j from AnalysisJob j where j.fileId = :fileId and j.status in :statuses order by j.id desc")
+    List<AnalysisJob> findByFileIdAndStatusIn(Long fileId, List<Integer> statuses);
+
+    @Query("select j from AnalysisJob j where j.batchId = :batchId order by j.id asc")
+    List<AnalysisJob> findByBatchId(String batchId);
+
+    /**
+     * 统计批次中未结束的任务数量
+     * @param batchId 批次ID
+     * @param statuses 未结束的状态
+     * @return 任务数量
+     */
+    @Query("select count(j) from AnalysisJob j where j.batchId = :batchId and j.status in :statuses")
+    long countByBatchIdAndStatusIn(String batchId, List<Integer> statuses);
+
+    /**
+     * 批量修改任务状态（服务重启时恢复中断的任务）
+     * @param fromStatus 原状态
+     * @param toStatus 目标状态
+     * @return 修改的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :toStatus where j.status = :fromStatus")
+    int updateStatus(Integer fromStatus, Integer toStatus);
+
+    /**
+     * 任务仍处于指定状态时标记为执行中，尝试次数加一；多实例部署时保证同一任务只被一个实例开始执行
+     * @param jobId 任务ID
+     * @param fromStatus 读取任务时的状态（排队中，或原实例宕机后被认领的执行中）
+     * @param toStatus 执行中
+     * @param startedTime 开始时间
+     * @return 修改的行数，任务状态已被修改（如已取消）时为 0
+     */
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :toStatus, j.attempts = coalesce(j.attempts, 0) + 1, j.startedTime = :startedTime "
+            + "where j.id = :jobId and j.status = :fromStatus")
+    int markStarted(Long jobId, Integer fromStatus, Integer toStatus, LocalDateTime startedTime);
+
+    /**
+     * 任务仍处于指定状态时标记为已结束（如排队中的任务被取消）
+     * @param jobId 任务ID
+     * @param fromStatus 原状态
+     * @param toStatus 结束状态
+     * @param finishedTime 结束时间
+     * @return 修改的行数，任务已被其他实例开始执行时为 0
+     */
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :toStatus, j.finishedTime = :finishedTime where j.id = :jobId and j.status = :fromStatus")
+    int markFinished(Long jobId, Integer fromStatus, Integer toStatus, LocalDateTime finishedTime);
+
+    /**
+     * 清除已到期的延迟派发时间，多个实例同时清除时只有一个成功
+     * @param jobId 任务ID
+     * @param status 任务需处于的状态
+     * @param now 当前时间
+     * @return 修改的行数，未到期或已被其他实例清除时为 0
+     */
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.notBefore = null where j.id = :jobId and j.status = :status and j.notBefore <= :now")
+    int clearNotBefore(Long jobId, Integer status, LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.stage = :stage where j.id = :jobId")
+    void updateStage(Long jobId, String stage);
+}
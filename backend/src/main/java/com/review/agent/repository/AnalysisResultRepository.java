@@ -51,6 +51,33 @@ public interface AnalysisResultRepository extends JpaRepository<AnalysisResult,
                                         @Param("tagId") Long tagId,
                                         @Param("userId") Long userId);
 
+    /**
+     * 查询文件中结束偏移大于指定偏移的分析结果（增量分析时被新会话覆盖的旧结果）
+     * @param fileId 文件ID
+     * @param offset 字符偏移
+     * @return 分析结果列表
+     */
+    @Query("select a from AnalysisResult a where a.fileId = :fileId and a.sessionEnd > :offset")
+    List<AnalysisResult> findByFileIdAndSessionEndAfter(Long fileId, Integer offset);
+
+    /**
+     * 按会话指纹查询用户的分析结果
+     * @param userId 用户ID
+     * @param fingerprintList 会话指纹列表
+     * @param status 分析状态
+     * @return 分析结果列表
+     */
+    @Query("select a from AnalysisResult a where a.userId = :userId and a.fingerprint in :fingerprintList and a.status = :status")
+    List<AnalysisResult> findByUserIdAndFingerprintIn(Long userId, List<String> fingerprintList, Integer status);
+
+    /**
+     * 按向量ID查询分析结果
+     * @param vectorIdList 向量ID列表
+     * @return 分析结果列表
+     */
+    @Query("select a from AnalysisResult a where a.vectorId in :vectorIdList")
+    List<AnalysisResult> findByVectorIdIn(List<String> vectorIdList);
+
     @Query("select a from AnalysisResult a where a.userId = :userId and a.fileId = :dataId order by a.createdTime desc")
     List<AnalysisResult> findByUserIdAndDataId(Long userId, Long dataId);
 
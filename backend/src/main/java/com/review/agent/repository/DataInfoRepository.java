@@ -5,7 +5,9 @@ import com.review.agent.entity.projection.DataInfoVo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
@@ -34,6 +36,28 @@ public interface DataInfoRepository extends JpaRepository<DataInfo, Long> {
     @Query("select d from DataInfo d where d.userId = :userId")
     List<DataInfo> findByUserId(Long userId);
 
+    /**
+     * 查询指定处理状态的文件
+     * @param userId 用户ID，为空时查询所有用户
+     * @param statuses 处理状态
+     * @return 文件列表
+     */
+    @Query("select d from DataInfo d where (d.userId = :userId or :userId is null) and d.processedStatus in :statuses order by d.id asc")
+    List<DataInfo> findByProcessedStatus(Long userId, List<Integer> statuses);
+
+    /**
+     * 比较并更新处理状态，状态已被其他请求修改时不更新
+     * @param id 文件ID
+     * @param expectStatus 期望的当前状态
+     * @param toStatus 目标状态
+     * @return 修改的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("update DataInfo d set d.processedStatus = :toStatus where d.id = :id " +
+            "and (d.processedStatus = :expectStatus or (:expectStatus is null and d.processedStatus is null))")
+    int compareAndSetStatus(Long id, Integer expectStatus, Integer toStatus);
+
     @Query("select d from DataInfo d where d.fileName = :fileName")
     DataInfo findByFileName(String fileName);
 
@@ -0,0 +1,182 @@
+package com.review.agent.service;
+
+import com.review.agent.common.constant.CommonConstant;
+import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.entity.pojo.AnalysisJob;
+import com.review.agent.entity.pojo.DataInfo;
+import com.review.agent.entity.vo.AnalysisBatchVo;
+import com.review.agent.repository.AnalysisJobRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.review.agent.common.constant.CommonConstant.*;
+
+/**
+ * 批量分析：将待分析文件（未处理 / 已更新）一次性提交到分析任务队列，由任务线程池按并发上限执行，
+ * 批次结束后统计吞吐（文件/分钟、会话/分钟、token/分钟）
+ */
+@Slf4j
+@Service
+public class AnalysisBatchService {
+    @Resource
+    private DataInfoService fileInfoService;
+    @Resource
+    private AnalysisJobService analysisJobService;
+    @Resource
+    private AnalysisJobRepository analysisJobRepository;
+    @Resource
+    private SseService sseService;
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 批次完成标记，保证完成统计只推送一次
+     */
+    private static final String BATCH_DONE_KEY_PREFIX = "batch-done:";
+    private static final long BATCH_DONE_EXPIRE_DAYS = 7;
+
+    /**
+     * 是否允许提交所有用户的批量分析
+     */
+    @Value("${analysis.batch.allow-all-users:false}")
+    private boolean allowAllUsers;
+
+    /**
+     * 提交批量分析
+     * @param userId 用户ID
+     * @param allUsers 是否分析所有用户的待分析文件
+     * @return 批次进度
+     */
+    public AnalysisBatchVo startBatch(Long userId, boolean allUsers) {
+        if (allUsers && !allowAllUsers) {
+            ExceptionUtils.throwParamError("batch analysis for all users is disabled");
+        }
+        List<DataInfo> fileList = fileInfoService.findPending(allUsers ? null : userId);
+        String batchId = "batch-" + UUID.randomUUID();
+        if (fileList.isEmpty()) {
+            sseService.sendLog(userId, "📭 没有待分析的文件");
+            return buildVo(batchId, List.of());
+        }
+
+        // 只提交状态未被其他请求改动的文件，已在分析中的文件跳过
+        fileList = fileList.stream()
+                .filter(dataInfo -> fileInfoService.compareAndSetStatus(dataInfo.getId(), dataInfo.getProcessedStatus(),
+                        CommonConstant.FILE_PROCESS_STATUS_PROCESSING))
+                .toList();
+        if (fileList.isEmpty()) {
+            sseService.sendLog(userId, "📭 待分析的文件已在分析中");
+            return buildVo(batchId, List.of());
+        }
+        List<AnalysisJob> jobList = analysisJobService.submitBatch(batchId, fileList);
+        sseService.sendLog(userId, "⏳ 批量分析已加入队列，文件数量: " + jobList.size());
+        return buildVo(batchId, jobList);
+    }
+
+    /**
+     * 查询批次进度
+     * @param userId 用户ID
+     * @param batchId 批次ID
+     * @return 批次进度
+     */
+    public AnalysisBatchVo getBatch(Long userId, String batchId) {
+        List<AnalysisJob> jobList = analysisJobRepository.findByBatchId(batchId);
+        boolean visible = allowAllUsers || jobList.stream().anyMatch(job -> job.getUserId().equals(userId));
+        if (jobList.isEmpty() || !visible) {
+            ExceptionUtils.throwDataNotFound("analysis batch not found, batchId: " + batchId);
+        }
+        return buildVo(batchId, jobList);
+    }
+
+    /**
+     * 批次中的任务结束时调用，整个批次结束后输出吞吐统计
+     * @param job 已结束的任务
+     */
+    public void onJobFinished(AnalysisJob job) {
+        String batchId = job.getBatchId();
+        long unfinished = analysisJobRepository.countByBatchIdAndStatusIn(batchId, List.of(JOB_STATUS_QUEUED, JOB_STATUS_RUNNING));
+        if (unfinished > 0) {
+            return;
+        }
+        // 多个任务同时结束时都会看到批次已完成，只有先写入完成标记的一方推送统计
+        if (!redissonClient.getBucket(BATCH_DONE_KEY_PREFIX + batchId, StringCodec.INSTANCE)
+                .trySet(String.valueOf(job.getId()), BATCH_DONE_EXPIRE_DAYS, TimeUnit.DAYS)) {
+            return;
+        }
+        List<AnalysisJob> jobList = analysisJobRepository.findByBatchId(batchId);
+        AnalysisBatchVo vo = buildVo(batchId, jobList);
+        log.info("批量分析完成, batchId: {}, 文件: {} (失败 {}), 会话: {}, token: {}, 耗时: {}s, 文件/分钟: {}, 会话/分钟: {}, token/分钟: {}",
+                batchId, vo.getTotalCount(), vo.getFailedCount(), vo.getSessionCount(), vo.getTotalTokens(), vo.getElapsedSeconds(),
+                format(vo.getFilesPerMinute()), format(vo.getSessionsPerMinute()), format(vo.getTokensPerMinute()));
+
+        String message = String.format("✅ 批量分析完成: %d 个文件（失败 %d），%d 个会话，%.1f 文件/分钟，%.1f 会话/分钟，%.0f token/分钟",
+                vo.getTotalCount(), vo.getFailedCount(), vo.getSessionCount(),
+                vo.getFilesPerMinute(), vo.getSessionsPerMinute(), vo.getTokensPerMinute());
+        jobList.stream().map(AnalysisJob::getUserId).distinct().forEach(userId -> sseService.sendLog(userId, message));
+    }
+
+    private AnalysisBatchVo buildVo(String batchId, List<AnalysisJob> jobList) {
+        AnalysisBatchVo vo = new AnalysisBatchVo();
+        vo.setBatchId(batchId);
+        vo.setTotalCount(jobList.size());
+
+        int queued = 0, running = 0, succeeded = 0, failed = 0;
+        long sessions = 0, tokens = 0;
+        LocalDateTime createdTime = null;
+        LocalDateTime finishedTime = null;
+        for (AnalysisJob job : jobList) {
+            switch (job.getStatus()) {
+                case JOB_STATUS_QUEUED -> queued++;
+                case JOB_STATUS_RUNNING -> running++;
+                case JOB_STATUS_SUCCEEDED -> succeeded++;
+                default -> failed++;
+            }
+            sessions += Optional.ofNullable(job.getSessionCount()).orElse(0);
+            tokens += Optional.ofNullable(job.getPromptTokens()).orElse(0L) + Optional.ofNullable(job.getCompletionTokens()).orElse(0L);
+            if (createdTime == null || job.getCreatedTime().isBefore(createdTime)) {
+                createdTime = job.getCreatedTime();
+            }
+            if (job.getFinishedTime() != null && (finishedTime == null || job.getFinishedTime().isAfter(finishedTime))) {
+                finishedTime = job.getFinishedTime();
+            }
+        }
+        boolean finished = queued == 0 && running == 0;
+        vo.setQueuedCount(queued);
+        vo.setRunningCount(running);
+        vo.setSucceededCount(succeeded);
+        vo.setFailedCount(failed);
+        vo.setFinished(finished);
+        vo.setSessionCount(sessions);
+        vo.setTotalTokens(tokens);
+        vo.setCreatedTime(createdTime);
+        vo.setFinishedTime(finished ? finishedTime : null);
+
+        if (createdTime != null) {
+            LocalDateTime endTime = finished && finishedTime != null ? finishedTime : LocalDateTime.now();
+            long elapsedSeconds = Math.max(1, Duration.between(createdTime, endTime).toSeconds());
+            double minutes = elapsedSeconds / 60.0;
+            vo.setElapsedSeconds(elapsedSeconds);
+            vo.setFilesPerMinute((succeeded + failed) / minutes);
+            vo.setSessionsPerMinute(sessions / minutes);
+            vo.setTokensPerMinute(tokens / minutes);
+        } else {
+            vo.setElapsedSeconds(0L);
+            vo.setFilesPerMinute(0.0);
+            vo.setSessionsPerMinute(0.0);
+            vo.setTokensPerMinute(0.0);
+        }
+        return vo;
+    }
+
+    private String format(Double value) {
+        return String.format("%.1f", value);
+    }
+}
@@ -0,0 +1,116 @@
+package com.review.agent.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.config.TokenUsageTracker;
+import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.entity.pojo.DataInfo;
+import com.review.agent.entity.vo.GraphBenchmarkVo;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static com.review.agent.common.constant.CommonConstant.*;
+
+/**
+ * 分析工作流对比：对同一文件分别执行标准模式和一体化模式，统计耗时与 token 消耗，结果不落库
+ */
+@Slf4j
+@Service
+public class AnalysisBenchmarkService {
+    @Resource
+    private CompiledGraph analysisCompiledGraph;
+    @Resource
+    private CompiledGraph fusedAnalysisCompiledGraph;
+    @Resource
+    private DataInfoService fileInfoService;
+    @Resource
+    private TokenUsageTracker tokenUsageTracker;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 对比两种分析工作流
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @return 对比结果（第一项为标准模式）
+     */
+    public List<GraphBenchmarkVo> compareGraph(Long userId, Long fileId) {
+        DataInfo dataInfo = fileInfoService.findById(fileId);
+        if (dataInfo == null || !userId.equals(dataInfo.getUserId())) {
+            ExceptionUtils.throwDataNotFound("file info not found, fileId: " + fileId);
+        }
+
+        GraphBenchmarkVo standard = runGraph(GRAPH_MODE_STANDARD, analysisCompiledGraph, userId, dataInfo);
+        GraphBenchmarkVo fused = runGraph(GRAPH_MODE_FUSED, fusedAnalysisCompiledGraph, userId, dataInfo);
+        for (GraphBenchmarkVo vo : List.of(standard, fused)) {
+            vo.setTokenRatio(ratio(vo.getTotalTokens(), standard.getTotalTokens()));
+            vo.setLatencyRatio(ratio(vo.getElapsedMillis(), standard.getElapsedMillis()));
+        }
+        log.info("工作流对比完成, fileId: {}, standard: {} tokens / {} ms, fused: {} tokens / {} ms", fileId,
+                standard.getTotalTokens(), standard.getElapsedMillis(), fused.getTotalTokens(), fused.getElapsedMillis());
+        return List.of(standard, fused);
+    }
+
+    private GraphBenchmarkVo runGraph(String mode, CompiledGraph graph, Long userId, DataInfo dataInfo) {
+        String usageKey = "benchmark-" + mode + "-" + UUID.randomUUID();
+
+        Map<String, Object> metaMap = new HashMap<>();
+        metaMap.put("fileId", dataInfo.getId());
+        metaMap.put("userId", userId);
+        metaMap.put("originalContent", dataInfo.getFileContent());
+        metaMap.put(TokenUsageTracker.USAGE_KEY, usageKey);
+        // 对比时每个会话都要真实调用模型
+        metaMap.put("dedupEnabled", false);
+        // 对比结果不写入分析结果表
+        metaMap.put("persistResult", false);
+        RunnableConfig config = RunnableConfig.builder()
+                .threadId(usageKey)
+                .build();
+
+        long start = System.currentTimeMillis();
+        NodeOutput lastOutput;
+        try {
+            lastOutput = graph.stream(metaMap, config).blockLast();
+        } catch (Exception e) {
+            // 异常时清理统计数据，避免残留
+            tokenUsageTracker.remove(usageKey);
+            throw e;
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        TokenUsageTracker.TokenUsage usage = tokenUsageTracker.remove(usageKey);
+
+        GraphBenchmarkVo vo = new GraphBenchmarkVo();
+        vo.setMode(mode);
+        vo.setElapsedMillis(elapsed);
+        vo.setLlmCalls(usage.calls());
+        vo.setPromptTokens(usage.promptTokens());
+        vo.setCompletionTokens(usage.completionTokens());
+        vo.setCachedPromptTokens(usage.cachedTokens());
+        vo.setTotalTokens(usage.totalTokens());
+
+        int sessionCount = 0;
+        int errorCount = 0;
+        if (lastOutput != null && lastOutput.state().value("nodeResult").orElse(null) instanceof List<?> nodeResult) {
+            sessionCount = nodeResult.size();
+            for (Object item : nodeResult) {
+                NodeExecuteDto dto = objectMapper.convertValue(item, NodeExecuteDto.class);
+                if (Objects.equals(dto.getStatus(), ANALYSIS_STATUS_ERROR)) {
+                    errorCount++;
+                }
+            }
+        }
+        vo.setSessionCount(sessionCount);
+        vo.setErrorCount(errorCount);
+        return vo;
+    }
+
+    private Double ratio(long value, long base) {
+        return base == 0 ? null : (double) value / base;
+    }
+}
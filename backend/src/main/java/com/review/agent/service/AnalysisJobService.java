@@ -0,0 +1,651 @@
+package com.review.agent.service;
+
+import com.review.agent.common.exception.FileLockedException;
+import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.config.AnalysisJobConfig;
+import com.review.agent.entity.pojo.AnalysisJob;
+import com.review.agent.entity.pojo.DataInfo;
+import com.review.agent.entity.vo.AnalysisJobVo;
+import com.review.agent.graph.support.AnalysisCancellation;
+import com.review.agent.repository.AnalysisJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.StreamMessageId;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.review.agent.common.constant.CommonConstant.*;
+
+/**
+ * 分析任务调度：任务先持久化到 analysis_job 表排队，再由有界线程池按全局/用户并发上限依次执行。
+ * 任务分交互、后台两个优先级，交互任务优先派发，后台任务最多占用部分线程。
+ * 多实例部署时任务经 {@link AnalysisJobStream} 分发，每个实例按自身线程数消费
+ */
+@Slf4j
+@Service
+public class AnalysisJobService {
+    @Resource
+    private AnalysisJobRepository analysisJobRepository;
+    @Resource
+    @Lazy
+    private AnalysisService analysisService;
+    @Resource
+    @Lazy
+    private AnalysisBatchService analysisBatchService;
+    @Resource
+    private AnalysisJobConfig analysisJobConfig;
+    @Resource(name = "analysisJobExecutor")
+    private ThreadPoolTaskExecutor analysisJobExecutor;
+    @Resource
+    private MeterRegistry meterRegistry;
+    @Resource
+    private AnalysisCancellation analysisCancellation;
+    @Resource
+    private SseService sseService;
+    @Resource
+    private AnalysisJobStream analysisJobStream;
+    @Resource
+    private FileAnalysisLock fileAnalysisLock;
+
+    /**
+     * 每个用户正在执行的任务数量
+     */
+    private final Map<Long, AtomicInteger> runningPerUser = new ConcurrentHashMap<>();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    /**
+     * 执行中的任务，用于检查任务和节点的截止时间
+     */
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+    private Lane interactiveLane;
+    private Lane backgroundLane;
+
+    @PostConstruct
+    public void init() {
+        interactiveLane = new Lane("interactive", analysisJobConfig.getInteractiveSloSeconds());
+        backgroundLane = new Lane("background", analysisJobConfig.getBackgroundSloSeconds());
+
+        if (analysisJobConfig.isDistributed()) {
+            // 任务可能在其他实例执行，取消通过广播送达；重启前未确认的消息由空闲认领接管，不在这里重置状态
+            analysisJobStream.onCancel(jobId -> {
+                if (runningJobs.containsKey(jobId) && analysisCancellation.cancel(usageKey(jobId), false)) {
+                    log.info("收到任务取消广播, jobId: {}", jobId);
+                }
+            });
+            return;
+        }
+        // 服务重启前未执行完的任务重新入队
+        int recovered = analysisJobRepository.updateStatus(JOB_STATUS_RUNNING, JOB_STATUS_QUEUED);
+        if (recovered > 0) {
+            log.info("恢复 {} 个中断的分析任务", recovered);
+        }
+    }
+
+    /**
+     * 提交分析任务
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @return 分析任务
+     */
+    public AnalysisJob submit(Long userId, Long fileId) {
+        return submit(userId, fileId, null);
+    }
+
+    /**
+     * 提交分析任务
+     * @param userId 用户ID
+     * @param fileId 文件ID
+     * @param batchId 批量分析批次ID
+     * @return 分析任务
+     */
+    public AnalysisJob submit(Long userId, Long fileId, String batchId) {
+        AnalysisJob job = new AnalysisJob();
+        job.setUserId(userId);
+        job.setFileId(fileId);
+        job.setBatchId(batchId);
+        job.setPriority(batchId == null ? JOB_PRIORITY_INTERACTIVE : JOB_PRIORITY_BACKGROUND);
+        job.setStatus(JOB_STATUS_QUEUED);
+        job.setAttempts(0);
+        job.setCreatedTime(LocalDateTime.now());
+        analysisJobRepository.save(job);
+        lane(job).queueDepth.incrementAndGet();
+        publish(job);
+        log.info("分析任务入队, jobId: {}, fileId: {}", job.getId(), fileId);
+
+        dispatch();
+        return job;
+    }
+
+    /**
+     * 批量提交分析任务（后台优先级），全部入队后统一派发
+     * @param batchId 批量分析批次ID
+     * @param fileList 待分析的文件
+     * @return 分析任务列表
+     */
+    public List<AnalysisJob> submitBatch(String batchId, List<DataInfo> fileList) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AnalysisJob> jobList = new ArrayList<>(fileList.size());
+        for (DataInfo dataInfo : fileList) {
+            AnalysisJob job = new AnalysisJob();
+            job.setUserId(dataInfo.getUserId());
+            job.setFileId(dataInfo.getId());
+            job.setBatchId(batchId);
+            job.setPriority(JOB_PRIORITY_BACKGROUND);
+            job.setStatus(JOB_STATUS_QUEUED);
+            job.setAttempts(0);
+            job.setCreatedTime(now);
+            jobList.add(job);
+        }
+        analysisJobRepository.saveAll(jobList);
+        backgroundLane.queueDepth.addAndGet(jobList.size());
+        jobList.forEach(this::publish);
+        log.info("批量分析任务入队, batchId: {}, 任务数量: {}", batchId, jobList.size());
+
+        dispatch();
+        return jobList;
+    }
+
+    /**
+     * 查询任务状态
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    public AnalysisJobVo getJob(Long userId, Long jobId) {
+        AnalysisJob job = analysisJobRepository.findById(jobId).orElse(null);
+        if (job == null || !job.getUserId().equals(userId)) {
+            ExceptionUtils.throwDataNotFound("analysis job not found, jobId: " + jobId);
+        }
+        return toVo(job);
+    }
+
+    /**
+     * 查询用户的任务列表
+     * @param userId 用户ID
+     * @return 任务列表
+     */
+    public List<AnalysisJobVo> listJob(Long userId) {
+        return analysisJobRepository.findByUserId(userId).stream().map(this::toVo).toList();
+    }
+
+    /**
+     * 查询文件排队中或执行中的任务
+     * @param fileId 文件ID
+     * @return 最新的未结束任务，没有时为 null
+     */
+    public AnalysisJob findActiveJob(Long fileId) {
+        List<AnalysisJob> jobList = analysisJobRepository.findByFileIdAndStatusIn(fileId, List.of(JOB_STATUS_QUEUED, JOB_STATUS_RUNNING));
+        return jobList.isEmpty() ? null : jobList.get(0);
+    }
+
+    /**
+     * 任务的用量统计 key，同时用于取消任务
+     * @param jobId 任务ID
+     * @return 用量统计 key
+     */
+    public static String usageKey(Long jobId) {
+        return "job-" + jobId;
+    }
+
+    /**
+     * 取消任务：排队中的任务直接标记为已取消，执行中的任务中断正在进行的模型调用
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    public synchronized AnalysisJobVo cancel(Long userId, Long jobId) {
+        AnalysisJob job = analysisJobRepository.findById(jobId).orElse(null);
+        if (job == null || !job.getUserId().equals(userId)) {
+            ExceptionUtils.throwDataNotFound("analysis job not found, jobId: " + jobId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (job.getStatus() == JOB_STATUS_QUEUED
+                && analysisJobRepository.markFinished(jobId, JOB_STATUS_QUEUED, JOB_STATUS_CANCELLED, now) == 0) {
+            // 排队中的任务已被其他实例开始执行，按执行中的任务取消
+            job = analysisJobRepository.findById(jobId).orElseThrow();
+        }
+        if (job.getStatus() == JOB_STATUS_QUEUED) {
+            job.setStatus(JOB_STATUS_CANCELLED);
+            job.setFinishedTime(now);
+            lane(job).queueDepth.decrementAndGet();
+            analysisService.markFileStatus(job.getFileId(), FILE_PROCESS_STATUS_CANCELLED);
+            if (job.getBatchId() != null) {
+                analysisBatchService.onJobFinished(job);
+            }
+        } else if (job.getStatus() == JOB_STATUS_RUNNING && analysisJobConfig.isDistributed()) {
+            // 任务可能在其他实例执行，广播给所有实例
+            analysisJobStream.publishCancel(jobId);
+        } else if (job.getStatus() != JOB_STATUS_RUNNING || !analysisCancellation.cancel(usageKey(jobId), false)) {
+            ExceptionUtils.throwParamError("only queued or running jobs can be cancelled, jobId: " + jobId);
+        }
+        log.info("分析任务取消, jobId: {}", jobId);
+        return toVo(job);
+    }
+
+    /**
+     * 恢复失败、取消或超时的任务：重新入队，从检查点继续执行
+     * @param userId 用户ID
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    public AnalysisJobVo resume(Long userId, Long jobId) {
+        AnalysisJob job = analysisJobRepository.findById(jobId).orElse(null);
+        if (job == null || !job.getUserId().equals(userId)) {
+            ExceptionUtils.throwDataNotFound("analysis job not found, jobId: " + jobId);
+        }
+        if (!List.of(JOB_STATUS_FAILED, JOB_STATUS_CANCELLED, JOB_STATUS_TIMEOUT).contains(job.getStatus())) {
+            ExceptionUtils.throwParamError("only failed, cancelled or timed out jobs can be resumed, jobId: " + jobId);
+        }
+        fileAnalysisLock.withSubmitLock(job.getFileId(), () -> {
+            // 文件已被重新提交分析时不再恢复旧任务
+            AnalysisJob activeJob = findActiveJob(job.getFileId());
+            if (activeJob != null) {
+                ExceptionUtils.throwParamError("file is already being analyzed by job " + activeJob.getId());
+            }
+            analysisService.markFileProcessing(job.getFileId());
+            job.setStatus(JOB_STATUS_QUEUED);
+            job.setAttempts(0);
+            job.setErrorMessage(null);
+            job.setFinishedTime(null);
+            analysisJobRepository.save(job);
+            lane(job).queueDepth.incrementAndGet();
+            publish(job);
+            return job;
+        });
+        log.info("分析任务恢复, jobId: {}", jobId);
+
+        dispatch();
+        return toVo(job);
+    }
+
+    /**
+     * 更新任务当前执行的节点，同时写入内存中的任务，结束时保存任务不会覆盖为旧值
+     * @param job 分析任务
+     * @param stage 节点名称
+     */
+    public void updateStage(AnalysisJob job, String stage) {
+        job.setStage(stage);
+        analysisJobRepository.updateStage(job.getId(), stage);
+        RunningJob running = runningJobs.get(job.getId());
+        if (running != null) {
+            running.nodeStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 检查执行中任务的截止时间，任务或当前节点执行过久时按超时取消
+     */
+    @Scheduled(fixedDelayString = "${analysis.job.deadline-check-interval-ms:5000}")
+    public void checkDeadlines() {
+        long now = System.nanoTime();
+        runningJobs.forEach((jobId, running) -> {
+            String key = usageKey(jobId);
+            if (analysisCancellation.isCancelled(key)) {
+                return;
+            }
+            boolean jobExpired = expired(now - running.startNanos, analysisJobConfig.getTimeoutSeconds());
+            boolean nodeExpired = expired(now - running.nodeStartNanos, analysisJobConfig.getNodeTimeoutSeconds());
+            if ((jobExpired || nodeExpired) && analysisCancellation.cancel(key, true)) {
+                log.warn("分析任务超时, jobId: {}, {}", jobId, jobExpired ? "任务执行超时" : "节点执行超时");
+            }
+        });
+    }
+
+    private boolean expired(long elapsedNanos, int timeoutSeconds) {
+        return timeoutSeconds > 0 && elapsedNanos > Duration.ofSeconds(timeoutSeconds).toNanos();
+    }
+
+    /**
+     * 按优先级、提交顺序派发排队中的任务，受全局线程数、后台线程数和单用户并发上限约束；
+     * 多实例部署时改为从消息流读取任务
+     */
+    @Scheduled(fixedDelayString = "${analysis.job.dispatch-interval-ms:5000}")
+    public synchronized void dispatch() {
+        List<AnalysisJob> queuedJobs = analysisJobRepository.findByStatus(JOB_STATUS_QUEUED);
+        long backgroundQueued = queuedJobs.stream().filter(job -> lane(job) == backgroundLane).count();
+        backgroundLane.queueDepth.set((int) backgroundQueued);
+        interactiveLane.queueDepth.set((int) (queuedJobs.size() - backgroundQueued));
+
+        LocalDateTime now = LocalDateTime.now();
+        int freeWorkers = analysisJobConfig.getWorkers() - runningCount.get();
+        if (analysisJobConfig.isDistributed()) {
+            republishDeferred(queuedJobs, now);
+            // 交互任务流优先读取，后台任务流只读取后台线程的空余部分
+            freeWorkers -= consume(analysisJobStream.read(false, freeWorkers), false);
+            consume(analysisJobStream.read(true, backgroundFreeWorkers(freeWorkers)), true);
+            return;
+        }
+        for (AnalysisJob job : queuedJobs) {
+            if (freeWorkers <= 0) {
+                break;
+            }
+            if (deferred(job, now)) {
+                continue;
+            }
+            Lane lane = lane(job);
+            // 后台任务不能占满线程，留出的线程专供交互任务
+            if (lane == backgroundLane && backgroundLane.running.get() >= analysisJobConfig.getBackgroundWorkers()) {
+                continue;
+            }
+            AtomicInteger userRunning = runningPerUser.computeIfAbsent(job.getUserId(), k -> new AtomicInteger());
+            if (userRunning.get() >= analysisJobConfig.getPerUserConcurrency()) {
+                continue;
+            }
+            if (start(job, userRunning, null)) {
+                freeWorkers--;
+            }
+        }
+    }
+
+    /**
+     * 多实例部署：刷新本实例执行中任务消息的空闲时间，认领宕机实例长时间未确认的任务，并裁剪已确认的消息
+     */
+    @Scheduled(fixedDelayString = "${analysis.job.stream-reclaim-interval-ms:10000}")
+    public synchronized void reclaim() {
+        if (!analysisJobConfig.isDistributed()) {
+            return;
+        }
+        for (boolean background : new boolean[]{false, true}) {
+            List<StreamMessageId> messageIdList = runningJobs.values().stream()
+                    .filter(running -> running.messageId != null && running.background == background)
+                    .map(running -> running.messageId)
+                    .toList();
+            analysisJobStream.touch(background, messageIdList);
+            analysisJobStream.trim(background);
+        }
+
+        int freeWorkers = analysisJobConfig.getWorkers() - runningCount.get();
+        freeWorkers -= consume(analysisJobStream.reclaim(false, freeWorkers), false);
+        consume(analysisJobStream.reclaim(true, backgroundFreeWorkers(freeWorkers)), true);
+    }
+
+    /**
+     * 执行从消息流取到的任务
+     * @param messageMap 消息ID -> 任务ID
+     * @param background 是否后台任务
+     * @return 开始执行的任务数量
+     */
+    private int consume(Map<StreamMessageId, Long> messageMap, boolean background) {
+        int started = 0;
+        for (Map.Entry<StreamMessageId, Long> entry : messageMap.entrySet()) {
+            AnalysisJob job = entry.getValue() == null ? null : analysisJobRepository.findById(entry.getValue()).orElse(null);
+            // 已取消或已结束的任务直接确认；执行中的任务说明原实例已宕机，接着执行
+            if (job == null || (job.getStatus() != JOB_STATUS_QUEUED && job.getStatus() != JOB_STATUS_RUNNING)) {
+                analysisJobStream.ack(background, entry.getKey());
+                continue;
+            }
+            if (deferred(job, LocalDateTime.now())) {
+                // 延迟派发中的任务到期后由派发重新发布
+                analysisJobStream.ack(background, entry.getKey());
+                continue;
+            }
+            AtomicInteger userRunning = runningPerUser.computeIfAbsent(job.getUserId(), k -> new AtomicInteger());
+            if (userRunning.get() >= analysisJobConfig.getPerUserConcurrency()) {
+                // 该用户在本实例的并发已满，放回队尾由其他实例或稍后派发
+                analysisJobStream.publish(job.getId(), background);
+                analysisJobStream.ack(background, entry.getKey());
+                continue;
+            }
+            if (start(job, userRunning, entry.getKey())) {
+                started++;
+            } else {
+                // 任务已被取消或由其他实例开始执行
+                analysisJobStream.ack(background, entry.getKey());
+            }
+        }
+        return started;
+    }
+
+    /**
+     * 多实例部署：重新发布延迟已到期的任务，清除延迟时间成功的实例负责发布，保证只发布一次
+     * @param queuedJobs 排队中的任务
+     * @param now 当前时间
+     */
+    private void republishDeferred(List<AnalysisJob> queuedJobs, LocalDateTime now) {
+        for (AnalysisJob job : queuedJobs) {
+            if (job.getNotBefore() != null && !deferred(job, now)
+                    && analysisJobRepository.clearNotBefore(job.getId(), JOB_STATUS_QUEUED, now) > 0) {
+                publish(job);
+            }
+        }
+    }
+
+    private boolean deferred(AnalysisJob job, LocalDateTime now) {
+        return job.getNotBefore() != null && job.getNotBefore().isAfter(now);
+    }
+
+    private int backgroundFreeWorkers(int freeWorkers) {
+        return Math.min(freeWorkers, analysisJobConfig.getBackgroundWorkers() - backgroundLane.running.get());
+    }
+
+    /**
+     * 标记任务开始执行并提交到线程池
+     * @param job 分析任务
+     * @param userRunning 该用户执行中的任务数量
+     * @param messageId 任务消息ID，单实例部署时为空
+     * @return 是否开始执行，任务状态在读取后已被修改（如其他实例取消或开始执行）时为 false
+     */
+    private boolean start(AnalysisJob job, AtomicInteger userRunning, StreamMessageId messageId) {
+        Lane lane = lane(job);
+        // 按读取时的状态条件更新，其他实例的取消或执行不会被覆盖
+        LocalDateTime startedTime = LocalDateTime.now();
+        if (analysisJobRepository.markStarted(job.getId(), job.getStatus(), JOB_STATUS_RUNNING, startedTime) == 0) {
+            log.info("分析任务状态已变化, 跳过执行, jobId: {}", job.getId());
+            return false;
+        }
+        job.setStatus(JOB_STATUS_RUNNING);
+        job.setAttempts(job.getAttempts() == null ? 1 : job.getAttempts() + 1);
+        job.setStartedTime(startedTime);
+        job.setNotBefore(null);
+
+        userRunning.incrementAndGet();
+        runningCount.incrementAndGet();
+        lane.running.incrementAndGet();
+        lane.queueDepth.decrementAndGet();
+        lane.waitTimer.record(Duration.between(job.getCreatedTime(), job.getStartedTime()));
+        // 派发时即登记，保证执行中的任务随时可以取消
+        analysisCancellation.register(usageKey(job.getId()));
+        RunningJob running = new RunningJob(System.nanoTime(), messageId, lane == backgroundLane);
+        runningJobs.put(job.getId(), running);
+
+        analysisJobExecutor.execute(() -> execute(job, running));
+        return true;
+    }
+
+    /**
+     * 多实例部署时将任务发布到消息流
+     * @param job 分析任务
+     */
+    private void publish(AnalysisJob job) {
+        if (analysisJobConfig.isDistributed()) {
+            analysisJobStream.publish(job.getId(), lane(job) == backgroundLane);
+        }
+    }
+
+    /**
+     * 执行任务，失败时在最大尝试次数内重新入队，取消或超时的任务不再重试
+     * @param job 分析任务
+     * @param running 执行中的任务
+     */
+    private void execute(AnalysisJob job, RunningJob running) {
+        Lane lane = lane(job);
+        String key = usageKey(job.getId());
+        long start = System.nanoTime();
+        try {
+            analysisService.executeAnalysis(job);
+            job.setStatus(JOB_STATUS_SUCCEEDED);
+            job.setErrorMessage(null);
+        } catch (FileLockedException e) {
+            // 文件正被其他任务分析：重新排队并延迟派发，不计入尝试次数，也不标记文件失败
+            log.info("文件正被其他任务分析, 任务稍后重新派发, jobId: {}, fileId: {}", job.getId(), job.getFileId());
+            job.setStatus(JOB_STATUS_QUEUED);
+            job.setAttempts(job.getAttempts() - 1);
+            job.setNotBefore(LocalDateTime.now().plusSeconds(analysisJobConfig.getLockRetryDelaySeconds()));
+        } catch (Exception e) {
+            if (analysisCancellation.isCancelled(key)) {
+                boolean timeout = analysisCancellation.isTimeout(key);
+                lane.failure(timeout ? "timeout" : "cancelled");
+                log.info("分析任务已{}, jobId: {}", timeout ? "超时" : "取消", job.getId());
+                job.setStatus(timeout ? JOB_STATUS_TIMEOUT : JOB_STATUS_CANCELLED);
+                job.setErrorMessage(timeout ? "analysis timed out" : "analysis cancelled");
+                analysisService.markFileStatus(job.getFileId(), timeout ? FILE_PROCESS_STATUS_TIMEOUT : FILE_PROCESS_STATUS_CANCELLED);
+                sseService.sendLog(job.getUserId(), timeout ? "⏱️ 分析超时，已停止" : "⏹️ 分析已取消");
+            } else {
+                log.error("分析任务执行失败, jobId: {}, attempts: {}", job.getId(), job.getAttempts(), e);
+                lane.failure(e.getClass().getSimpleName());
+                job.setErrorMessage(errorMessage(e));
+                if (job.getAttempts() < analysisJobConfig.getMaxAttempts()) {
+                    job.setStatus(JOB_STATUS_QUEUED);
+                } else {
+                    job.setStatus(JOB_STATUS_FAILED);
+                    analysisService.markFileError(job.getFileId());
+                }
+            }
+        } finally {
+            analysisCancellation.unregister(key);
+            runningJobs.remove(job.getId());
+            lane.executeTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            if (job.getStatus() != JOB_STATUS_QUEUED) {
+                job.setFinishedTime(LocalDateTime.now());
+                lane.latencyTimer.record(Duration.between(job.getCreatedTime(), job.getFinishedTime()));
+            }
+            try {
+                analysisJobRepository.save(job);
+            } finally {
+                // 保存失败时也要释放执行名额，否则该名额永久占用
+                runningPerUser.get(job.getUserId()).decrementAndGet();
+                runningCount.decrementAndGet();
+                lane.running.decrementAndGet();
+            }
+        }
+        if (running.messageId != null) {
+            // 需要重试的任务重新发布，再确认原消息；确认失败时消息会被认领，届时按任务状态直接确认。
+            // 延迟派发的任务不在这里发布，到期后由派发重新发布
+            if (job.getStatus() == JOB_STATUS_QUEUED && job.getNotBefore() == null) {
+                analysisJobStream.publish(job.getId(), running.background);
+            }
+            analysisJobStream.ack(running.background, running.messageId);
+        }
+        if (job.getBatchId() != null && job.getStatus() != JOB_STATUS_QUEUED) {
+            analysisBatchService.onJobFinished(job);
+        }
+        dispatch();
+    }
+
+    /**
+     * 失败原因，按列长度截断
+     * @param e 异常
+     * @return 失败原因
+     */
+    private String errorMessage(Exception e) {
+        String message = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+        return message.length() > JOB_ERROR_MESSAGE_MAX_LENGTH ? message.substring(0, JOB_ERROR_MESSAGE_MAX_LENGTH) : message;
+    }
+
+    private AnalysisJobVo toVo(AnalysisJob job) {
+        AnalysisJobVo vo = new AnalysisJobVo();
+        vo.setJobId(job.getId());
+        vo.setFileId(job.getFileId());
+        vo.setStatus(job.getStatus());
+        vo.setAttempts(job.getAttempts());
+        vo.setPriority(job.getPriority());
+        vo.setStage(job.getStage());
+        vo.setErrorMessage(job.getErrorMessage());
+        vo.setBatchId(job.getBatchId());
+        vo.setSessionCount(job.getSessionCount());
+        vo.setCreatedTime(job.getCreatedTime());
+        vo.setStartedTime(job.getStartedTime());
+        vo.setFinishedTime(job.getFinishedTime());
+        if (job.getStatus() == JOB_STATUS_QUEUED) {
+            vo.setQueuePosition(analysisJobRepository.countAhead(job.getId(), priority(job), JOB_STATUS_QUEUED));
+        }
+        return vo;
+    }
+
+    private int priority(AnalysisJob job) {
+        return job.getPriority() == null ? JOB_PRIORITY_INTERACTIVE : job.getPriority();
+    }
+
+    private Lane lane(AnalysisJob job) {
+        return priority(job) == JOB_PRIORITY_BACKGROUND ? backgroundLane : interactiveLane;
+    }
+
+    /**
+     * 执行中的任务：任务与当前节点的开始时间，多实例部署时还有对应的任务消息
+     */
+    private static final class RunningJob {
+        private final long startNanos;
+        private volatile long nodeStartNanos;
+        private final StreamMessageId messageId;
+        private final boolean background;
+
+        private RunningJob(long startNanos, StreamMessageId messageId, boolean background) {
+            this.startNanos = startNanos;
+            this.nodeStartNanos = startNanos;
+            this.messageId = messageId;
+            this.background = background;
+        }
+    }
+
+    /**
+     * 优先级通道：各自的排队/执行数量与耗时指标
+     */
+    private class Lane {
+        private final String name;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Timer executeTimer;
+        private final Timer latencyTimer;
+
+        private Lane(String name, int sloSeconds) {
+            this.name = name;
+            Gauge.builder("analysis.job.queue.depth", queueDepth, AtomicInteger::get)
+                    .description("排队中的分析任务数量")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder("analysis.job.running", running, AtomicInteger::get)
+                    .description("执行中的分析任务数量")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            waitTimer = Timer.builder("analysis.job.wait")
+                    .description("分析任务从入队到开始执行的等待时间")
+                    .tag("lane", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            executeTimer = Timer.builder("analysis.job.execute")
+                    .description("分析任务执行耗时")
+                    .tag("lane", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            latencyTimer = Timer.builder("analysis.job.latency")
+                    .description("分析任务从入队到结束的耗时，按目标耗时统计达标比例")
+                    .tag("lane", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .serviceLevelObjectives(Duration.ofSeconds(sloSeconds))
+                    .register(meterRegistry);
+        }
+
+        /**
+         * 按类型统计执行失败的任务（取消、超时或异常类名），含会重试的失败
+         * @param type 失败类型
+         */
+        private void failure(String type) {
+            meterRegistry.counter("analysis.job.failures", "lane", name, "type", type).increment();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.review.agent.service;
+
+import com.review.agent.config.AnalysisJobConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.PendingEntry;
+import org.redisson.api.PendingResult;
+import org.redisson.api.RStream;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamGroup;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.api.stream.StreamTrimArgs;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 分析任务消息流：多实例部署时任务发布到 Redis Stream，各实例以同一消费组读取，
+ * 执行完成后确认；实例宕机后未确认的消息空闲超时由其他实例认领继续执行
+ */
+@Slf4j
+@Component
+public class AnalysisJobStream {
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private AnalysisJobConfig analysisJobConfig;
+
+    private static final String JOB_ID_FIELD = "jobId";
+
+    /**
+     * 当前实例在消费组中的名称，每次启动都不同，重启前未确认的消息由空闲认领接管
+     */
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @PostConstruct
+    public void init() {
+        if (!analysisJobConfig.isDistributed()) {
+            return;
+        }
+        for (boolean background : new boolean[]{false, true}) {
+            try {
+                stream(background).createGroup(StreamCreateGroupArgs.name(analysisJobConfig.getStreamGroup())
+                        .id(StreamMessageId.ALL)
+                        .makeStream());
+            } catch (RedisException e) {
+                // 消费组已存在
+                if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")) {
+                    throw e;
+                }
+            }
+        }
+        log.info("分析任务消息流已启用, consumer: {}", consumerName);
+    }
+
+    public String getConsumerName() {
+        return consumerName;
+    }
+
+    /**
+     * 发布任务
+     * @param jobId 任务ID
+     * @param background 是否后台任务
+     */
+    public void publish(Long jobId, boolean background) {
+        stream(background).add(StreamAddArgs.entry(JOB_ID_FIELD, String.valueOf(jobId)));
+    }
+
+    /**
+     * 裁剪已确认的消息：只删除消费组已投递且不在未确认列表中的消息，
+     * 按长度裁剪会连同未投递、未确认的消息一起删除，排队中的任务就再也不会被派发
+     * @param background 是否后台任务
+     */
+    public void trim(boolean background) {
+        RStream<String, String> stream = stream(background);
+        if (stream.size() <= analysisJobConfig.getStreamMaxLength()) {
+            return;
+        }
+        StreamMessageId minId = stream.listGroups().stream()
+                .filter(group -> analysisJobConfig.getStreamGroup().equals(group.getName()))
+                .map(StreamGroup::getLastDeliveredId)
+                .findFirst()
+                .orElse(null);
+        if (minId == null) {
+            return;
+        }
+        PendingResult pendingResult = stream.getPendingInfo(analysisJobConfig.getStreamGroup());
+        StreamMessageId lowestPendingId = pendingResult == null ? null : pendingResult.getLowestId();
+        if (lowestPendingId != null && compare(lowestPendingId, minId) < 0) {
+            minId = lowestPendingId;
+        }
+        // MINID 只删除 ID 小于 minId 的消息，minId 本身保留
+        stream.trimNonStrict(StreamTrimArgs.minId(minId).noLimit());
+    }
+
+    /**
+     * 读取未投递过的任务，不阻塞
+     * @param background 是否后台任务
+     * @param count 最多读取数量
+     * @return 消息ID -> 任务ID，按消息顺序
+     */
+    public Map<StreamMessageId, Long> read(boolean background, int count) {
+        if (count <= 0) {
+            return Collections.emptyMap();
+        }
+        Map<StreamMessageId, Map<String, String>> messageMap = stream(background).readGroup(
+                analysisJobConfig.getStreamGroup(), consumerName, StreamReadGroupArgs.neverDelivered().count(count));
+        return toJobIdMap(messageMap);
+    }
+
+    /**
+     * 认领其他实例长时间未确认的任务（实例宕机或重启）
+     * @param background 是否后台任务
+     * @param count 最多认领数量
+     * @return 消息ID -> 任务ID，按消息顺序
+     */
+    public Map<StreamMessageId, Long> reclaim(boolean background, int count) {
+        if (count <= 0) {
+            return Collections.emptyMap();
+        }
+        long idleMillis = TimeUnit.SECONDS.toMillis(analysisJobConfig.getStreamReclaimIdleSeconds());
+        RStream<String, String> stream = stream(background);
+        List<PendingEntry> pendingList = stream.listPending(analysisJobConfig.getStreamGroup(),
+                StreamMessageId.MIN, StreamMessageId.MAX, idleMillis, TimeUnit.MILLISECONDS, count);
+        StreamMessageId[] idArray = pendingList.stream()
+                .filter(entry -> !consumerName.equals(entry.getConsumerName()))
+                .map(PendingEntry::getId)
+                .toArray(StreamMessageId[]::new);
+        if (idArray.length == 0) {
+            return Collections.emptyMap();
+        }
+        // 认领时按空闲时间再判断一次，并发认领时只有一个实例能成功
+        Map<StreamMessageId, Map<String, String>> messageMap = stream.claim(analysisJobConfig.getStreamGroup(),
+                consumerName, idleMillis, TimeUnit.MILLISECONDS, idArray);
+        Map<StreamMessageId, Long> jobIdMap = toJobIdMap(messageMap);
+        if (!jobIdMap.isEmpty()) {
+            log.info("认领空闲的分析任务消息, 数量: {}, background: {}", jobIdMap.size(), background);
+        }
+        return jobIdMap;
+    }
+
+    /**
+     * 刷新执行中任务消息的空闲时间，避免长任务被其他实例误认领
+     * @param background 是否后台任务
+     * @param messageIds 执行中的消息ID
+     */
+    public void touch(boolean background, Collection<StreamMessageId> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        stream(background).claim(analysisJobConfig.getStreamGroup(), consumerName, 0, TimeUnit.MILLISECONDS,
+                messageIds.toArray(new StreamMessageId[0]));
+    }
+
+    /**
+     * 确认任务消息
+     * @param background 是否后台任务
+     * @param messageId 消息ID
+     */
+    public void ack(boolean background, StreamMessageId messageId) {
+        stream(background).ack(analysisJobConfig.getStreamGroup(), messageId);
+    }
+
+    /**
+     * 广播取消执行中的任务，由实际执行该任务的实例处理
+     * @param jobId 任务ID
+     */
+    public void publishCancel(Long jobId) {
+        cancelTopic().publish(String.valueOf(jobId));
+    }
+
+    /**
+     * 订阅任务取消广播
+     * @param listener 取消回调（任务ID）
+     */
+    public void onCancel(Consumer<Long> listener) {
+        cancelTopic().addListener(String.class, (channel, message) -> listener.accept(Long.parseLong(message)));
+    }
+
+    private RStream<String, String> stream(boolean background) {
+        String name = analysisJobConfig.getStreamKey() + (background ? ":background" : ":interactive");
+        return redissonClient.getStream(name, StringCodec.INSTANCE);
+    }
+
+    private RTopic cancelTopic() {
+        return redissonClient.getTopic(analysisJobConfig.getStreamKey() + ":cancel", StringCodec.INSTANCE);
+    }
+
+    private int compare(StreamMessageId a, StreamMessageId b) {
+        int result = Long.compare(a.getId0(), b.getId0());
+        return result != 0 ? result : Long.compare(a.getId1(), b.getId1());
+    }
+
+    private Map<StreamMessageId, Long> toJobIdMap(Map<StreamMessageId, Map<String, String>> messageMap) {
+        Map<StreamMessageId, Long> jobIdMap = new LinkedHashMap<>();
+        if (messageMap == null) {
+            return jobIdMap;
+        }
+        messageMap.forEach((messageId, fieldMap) -> {
+            String jobId = fieldMap == null ? null : fieldMap.get(JOB_ID_FIELD);
+            // 已被裁剪的消息只剩ID，交给调用方直接确认
+            jobIdMap.put(messageId, jobId == null ? null : Long.parseLong(jobId));
+        });
+        return jobIdMap;
+    }
+}
@@ -0,0 +1,140 @@
+package com.review.agent.service;
+
+import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.entity.pojo.AnalysisResult;
+import com.review.agent.entity.pojo.AnalysisTag;
+import com.review.agent.entity.vo.AnalysisResultVo;
+import com.review.agent.repository.AnalysisResultRepository;
+import com.review.agent.repository.AnalysisTagRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * 会话分析结果写入：每个会话分析完成后立即保存分析结果与标签并推送给客户端，
+ * 向量攒批后合并向量化写入
+ */
+@Slf4j
+@Service
+public class AnalysisResultWriter {
+    @Resource
+    private AnalysisResultRepository analysisResultRepository;
+    @Resource
+    private AnalysisTagRepository analysisTagRepository;
+    @Resource
+    private VectorStoreService vectorStoreService;
+    @Resource
+    private SseService sseService;
+
+    /**
+     * 向量缓冲区达到该数量时批量写入
+     */
+    @Value("${analysis.vector.flush-size:20}")
+    private int flushSize;
+
+    /**
+     * 创建向量缓冲区，同一次分析的会话共用，写完后需调用 {@link #flushVectors(List)}
+     * @return 线程安全的向量缓冲区
+     */
+    public List<Document> newVectorBuffer() {
+        return Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * 保存单个会话的分析结果，已保存过的会话（analysisId 不为空）直接跳过；
+     * 向量先放入缓冲区，攒够一批后合并向量化写入
+     * @param executeDto 会话分析结果，保存后回填 analysisId
+     * @param vectorBuffer 向量缓冲区
+     */
+    public void persist(NodeExecuteDto executeDto, List<Document> vectorBuffer) {
+        if (executeDto.getAnalysisId() != null) {
+            return;
+        }
+        // 分析失败的会话没有问题描述，不写入向量
+        String vectorId = StringUtils.hasText(executeDto.getProblemStatement()) ? UUID.randomUUID().toString() : null;
+
+        AnalysisResult analysisResult = new AnalysisResult();
+        analysisResult.setVectorId(vectorId);
+        analysisResult.setUserId(executeDto.getUserId());
+        analysisResult.setFileId(executeDto.getFileId());
+        analysisResult.setProblemStatement(executeDto.getProblemStatement());
+        analysisResult.setSolution(executeDto.getSolution());
+        analysisResult.setSessionStart(executeDto.getSessionStart());
+        analysisResult.setSessionEnd(executeDto.getSessionEnd());
+        analysisResult.setSessionContent(executeDto.getSessionContent());
+        analysisResult.setFingerprint(executeDto.getFingerprint());
+        analysisResult.setStatus(executeDto.getStatus());
+        analysisResult.setCreatedTime(LocalDateTime.now());
+        analysisResultRepository.save(analysisResult);
+
+        AnalysisTag analysisTag = new AnalysisTag();
+        analysisTag.setAnalysisId(analysisResult.getId());
+        analysisTag.setTagId(executeDto.getTagId());
+        analysisTag.setSubTagId(executeDto.getSubTagId());
+        analysisTag.setRecommends(executeDto.getRecommends());
+        analysisTag.setConfidenceScore(executeDto.getConfidence());
+        analysisTagRepository.save(analysisTag);
+
+        executeDto.setAnalysisId(analysisResult.getId());
+        sseService.sendResult(executeDto.getUserId(), toVo(analysisResult));
+
+        if (vectorId != null) {
+            vectorBuffer.add(buildDocument(vectorId, executeDto));
+            if (vectorBuffer.size() >= flushSize) {
+                flushVectors(vectorBuffer);
+            }
+        }
+    }
+
+    /**
+     * 将缓冲区中的向量批量写入向量数据库
+     * @param vectorBuffer 向量缓冲区
+     */
+    public void flushVectors(List<Document> vectorBuffer) {
+        List<Document> documentList;
+        synchronized (vectorBuffer) {
+            documentList = new ArrayList<>(vectorBuffer);
+            vectorBuffer.clear();
+        }
+        if (documentList.isEmpty()) {
+            return;
+        }
+        try {
+            vectorStoreService.addBatch(documentList);
+        } catch (Exception e) {
+            log.error("向量批量写入失败, 数量: {}", documentList.size(), e);
+        }
+    }
+
+    /**
+     * 构建向量文档
+     * @param vectorId 向量ID
+     * @param executeDto 节点执行结果
+     * @return 向量文档
+     */
+    private Document buildDocument(String vectorId, NodeExecuteDto executeDto) {
+        Map<String, Object> metaDataMap = new HashMap<>();
+        metaDataMap.put("userId", executeDto.getUserId().toString());
+        metaDataMap.put("fileId", executeDto.getFileId().toString());
+        metaDataMap.put("solution", executeDto.getSolution());
+        metaDataMap.put("sessionContent", executeDto.getSessionContent());
+        return new Document(vectorId, executeDto.getProblemStatement(), metaDataMap);
+    }
+
+    private AnalysisResultVo toVo(AnalysisResult analysisResult) {
+        AnalysisResultVo vo = new AnalysisResultVo();
+        vo.setId(analysisResult.getId());
+        vo.setFileId(analysisResult.getFileId());
+        vo.setVectorId(analysisResult.getVectorId());
+        vo.setProblemStatement(analysisResult.getProblemStatement());
+        vo.setCreateTime(Date.from(analysisResult.getCreatedTime().atZone(ZoneId.systemDefault()).toInstant()));
+        return vo;
+    }
+}
@@ -1,32 +1,46 @@
 package com.review.agent.service;
 
 import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.RunnableConfig;
+import com.alibaba.cloud.ai.graph.checkpoint.savers.redis.RedisSaver;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.review.agent.common.constant.CommonConstant;
+import com.review.agent.common.exception.FileLockedException;
 import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.config.TokenUsageTracker;
 import com.review.agent.entity.dto.NodeExecuteDto;
 import com.review.agent.entity.pojo.*;
 import com.review.agent.entity.projection.AnalysisResultInfo;
 import com.review.agent.entity.request.AnalysisResultRequest;
 import com.review.agent.entity.vo.AnalysisResultVo;
 import com.review.agent.entity.vo.AnalysisTagVo;
+import com.review.agent.graph.support.AnalysisCancellation;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import com.review.agent.graph.support.SessionProgressStore;
 import com.review.agent.repository.AnalysisResultRepository;
 import com.review.agent.repository.AnalysisTagRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
 import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.review.agent.common.constant.CommonConstant.GRAPH_MODE_FUSED;
+import static com.review.agent.common.constant.CommonConstant.GRAPH_MODE_STANDARD;
+
 @Slf4j
 @Service
 public class AnalysisService {
@@ -45,62 +59,289 @@ public class AnalysisService {
     @Resource
     private CompiledGraph analysisCompiledGraph;
     @Resource
+    private CompiledGraph fusedAnalysisCompiledGraph;
+    @Resource
     private SseService sseService;
     @Resource
     private VectorStoreService vectorStoreService;
+    @Resource
+    private AnalysisJobService analysisJobService;
+    @Resource
+    private TokenUsageTracker tokenUsageTracker;
+    @Resource
+    private SessionProgressStore sessionProgressStore;
+    @Resource
+    private MeterRegistry meterRegistry;
+    @Resource
+    private RedisSaver redisSaver;
+    @Resource
+    private AnalysisResultWriter analysisResultWriter;
+    @Resource
+    private AnalysisCancellation analysisCancellation;
+    @Resource
+    private FileAnalysisLock fileAnalysisLock;
 
     /**
-     * 开始分析
+     * 默认的分析工作流模式，用户未单独配置时使用
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void startAnalysis(Long userId, Long fileId) {
+    @Value("${analysis.graph.mode:standard}")
+    private String defaultGraphMode;
+
+    /**
+     * 是否对只追加了内容的文件进行增量分析
+     */
+    @Value("${analysis.incremental.enabled:true}")
+    private boolean incrementalEnabled;
+
+    /**
+     * 增量分析时向前多带的已分析记录数量，用于衔接延续的会话
+     */
+    @Value("${analysis.incremental.overlap-records:2}")
+    private int overlapRecords;
+
+    /**
+     * 开始分析：校验后提交到分析任务队列，立即返回任务ID；
+     * 同一文件已有排队或执行中的任务时不重复提交，直接返回该任务
+     * @return 任务ID
+     */
+    public Long startAnalysis(Long userId, Long fileId) {
         UserInfo userInfo = userService.findById(userId);
         if (userInfo == null) {
             throw new IllegalArgumentException("user not found");
         }
 
+        // 文件锁串行化同一文件的提交（包括其他实例），状态比较更新防止与批量分析同时提交
+        return fileAnalysisLock.withSubmitLock(fileId, () -> {
+            DataInfo dataInfo = fileInfoService.findById(fileId);
+            if (dataInfo == null) {
+                log.error("file info not found, fileId: {}", fileId);
+                ExceptionUtils.throwDataNotFound("file info not found, fileId: " + fileId);
+            }
+            AnalysisJob activeJob = analysisJobService.findActiveJob(fileId);
+            if (activeJob != null) {
+                log.info("文件已在分析中, fileId: {}, jobId: {}", fileId, activeJob.getId());
+                sseService.sendLog(userId, "🔗 文件已在分析中，加入已有任务: " + dataInfo.getFileName());
+                return activeJob.getId();
+            }
+            if (!fileInfoService.compareAndSetStatus(fileId, dataInfo.getProcessedStatus(), CommonConstant.FILE_PROCESS_STATUS_PROCESSING)) {
+                ExceptionUtils.throwParamError("file status changed concurrently, please retry, fileId: " + fileId);
+            }
+
+            AnalysisJob job = analysisJobService.submit(userId, fileId);
+            sseService.sendLog(userId, "⏳ 已加入分析队列: " + dataInfo.getFileName());
+            return job.getId();
+        });
+    }
+
+    /**
+     * 执行分析任务（由分析任务线程池调用），执行期间持有文件执行锁
+     * @param job 分析任务
+     */
+    public void executeAnalysis(AnalysisJob job) {
+        RLock fileLock = fileAnalysisLock.tryLockExecution(job.getFileId());
+        if (fileLock == null) {
+            throw new FileLockedException("file is being analyzed by another job, fileId: " + job.getFileId());
+        }
+        try {
+            doExecuteAnalysis(job);
+        } finally {
+            fileAnalysisLock.unlock(fileLock);
+        }
+    }
+
+    private void doExecuteAnalysis(AnalysisJob job) {
+        Long userId = job.getUserId();
+        Long fileId = job.getFileId();
         DataInfo dataInfo = fileInfoService.findById(fileId);
         if (dataInfo == null) {
-            log.error("file info not found, fileId: {}", fileId);
             ExceptionUtils.throwDataNotFound("file info not found, fileId: " + fileId);
         }
-        dataInfo.setProcessedStatus(CommonConstant.FILE_PROCESS_STATUS_PROCESSING);
-        fileInfoService.update(dataInfo);
+        sseService.sendLog(userId, "🚀 开始分析文件: " + dataInfo.getFileName());
+
+        String content = Optional.ofNullable(dataInfo.getFileContent()).orElse("");
+        // 文件只追加了内容时，从已分析位置前的若干条记录开始增量分析
+        int analyzedOffset = isAppendOnly(dataInfo, content) ? dataInfo.getAnalyzedOffset() : 0;
+        int contentOffset = 0;
+        if (analyzedOffset > 0) {
+            DialogueRecordIndex recordIndex = DialogueRecordIndex.of(content);
+            int firstNewRecord = recordIndex.firstRecordFrom(analyzedOffset);
+            if (firstNewRecord > recordIndex.size()) {
+                log.info("文件没有新增记录, fileId: {}", fileId);
+                dataInfo.setProcessedStatus(CommonConstant.FILE_PROCESS_STATUS_PROCESSED);
+                fileInfoService.update(dataInfo);
+                job.setSessionCount(0);
+                sseService.sendLog(userId, "✅ 文件没有新增记录: " + dataInfo.getFileName());
+                return;
+            }
+            int overlapStart = recordIndex.start(Math.max(1, firstNewRecord - overlapRecords));
+            // 结束位置在重叠范围内的旧会话会被替换，从其中最早的起始位置开始重新拆分，避免旧会话在重叠范围之前的记录丢失结果
+            contentOffset = analysisResultRepository.findByFileIdAndSessionEndAfter(fileId, overlapStart).stream()
+                    .map(AnalysisResult::getSessionStart)
+                    .filter(Objects::nonNull)
+                    .reduce(overlapStart, Math::min);
+            sseService.sendLog(userId, "➕ 增量分析新增的 " + (recordIndex.size() - firstNewRecord + 1) + " 条记录");
+        }
 
-        new Thread(() -> {
-            sseService.sendLog(userId, "🚀 开始分析文件: " + dataInfo.getFileName());
+        Map<String, Object> metaMap = new HashMap<>();
+        metaMap.put("fileId", fileId);
+        metaMap.put("userId", userId);
+        metaMap.put("originalContent", content.substring(contentOffset));
+        metaMap.put("contentOffset", contentOffset);
+        String usageKey = AnalysisJobService.usageKey(job.getId());
+        metaMap.put(TokenUsageTracker.USAGE_KEY, usageKey);
+        metaMap.put("background", Objects.equals(job.getPriority(), CommonConstant.JOB_PRIORITY_BACKGROUND));
+
+        // 检查点按任务隔离，任务重试或服务重启后从上次保存的会话列表继续
+        String checkpointId = "analysis-job-" + job.getId();
+        metaMap.put(SessionProgressStore.CHECKPOINT_KEY, checkpointId);
+        RunnableConfig config = RunnableConfig.builder()
+                .threadId(checkpointId)
+                .build();
+        CompiledGraph graph = resolveGraph(userId);
+        List<NodeExecuteDto> checkpointResult = loadCheckpoint(graph, config);
+        if (!checkpointResult.isEmpty()) {
+            metaMap.put("nodeResult", checkpointResult);
+            sseService.sendLog(userId, "♻️ 从检查点恢复 " + checkpointResult.size() + " 个会话");
+        }
 
-            Map<String, Object> metaMap = new HashMap<>();
-            metaMap.put("fileId", fileId);
-            metaMap.put("userId", userId);
-            metaMap.put("originalContent", dataInfo.getFileContent());
+        sseService.sendLog(userId, "🤖 正在执行AI分析流...");
+        // 调用图计算引擎
+        try {
+            NodeOutput lastOutput = graph.stream(metaMap, config)
+                    .doOnNext(output -> {
+                        analysisJobService.updateStage(job, output.node());
+                        analysisCancellation.checkCancelled(usageKey);
+                    })
+                    .blockLast();
+            // 取消后不再保存结果，保留检查点以便恢复
+            analysisCancellation.checkCancelled(usageKey);
+            if (lastOutput != null) {
+                job.setSessionCount(processAnalysisResult(lastOutput.state(), dataInfo, contentOffset));
+                DistributionSummary.builder("analysis.file.sessions")
+                        .description("单个文件（增量分析时为新增内容）拆分出的会话数量")
+                        .tag("mode", graph == fusedAnalysisCompiledGraph ? GRAPH_MODE_FUSED : GRAPH_MODE_STANDARD)
+                        .register(meterRegistry)
+                        .record(job.getSessionCount());
+            }
+            clearCheckpoint(checkpointId, config);
+        } finally {
+            // 累计本次执行的 token 用量（含失败重试）
+            TokenUsageTracker.TokenUsage usage = tokenUsageTracker.remove(usageKey);
+            job.setPromptTokens(Optional.ofNullable(job.getPromptTokens()).orElse(0L) + usage.promptTokens());
+            job.setCompletionTokens(Optional.ofNullable(job.getCompletionTokens()).orElse(0L) + usage.completionTokens());
+            job.setCachedPromptTokens(Optional.ofNullable(job.getCachedPromptTokens()).orElse(0L) + usage.cachedTokens());
+        }
 
-            sseService.sendLog(userId, "🤖 正在执行AI分析流...");
-            // 调用图计算引擎
-            RunnableConfig config = RunnableConfig.builder()
-                    .threadId("analysis-graph-" + userId)
-                    .build();
-            Optional<OverAllState> callResult = analysisCompiledGraph.invoke(metaMap, config);
-            callResult.ifPresent(overAllState -> processAnalysisResult(overAllState, dataInfo));
+        sseService.sendLog(userId, "✅ 分析完成: " + dataInfo.getFileName());
+    }
 
-            sseService.sendLog(userId, "✅ 分析完成: " + dataInfo.getFileName());
-        }).start();
+    /**
+     * 读取任务上次执行保存的会话列表
+     * @param graph 分析工作流
+     * @param config 检查点配置
+     * @return 会话列表，没有检查点时为空
+     */
+    private List<NodeExecuteDto> loadCheckpoint(CompiledGraph graph, RunnableConfig config) {
+        try {
+            Object nodeResult = graph.lastStateOf(config)
+                    .flatMap(snapshot -> snapshot.state().value("nodeResult"))
+                    .orElse(null);
+            if (nodeResult instanceof List<?> rawList && !rawList.isEmpty()) {
+                return rawList.stream()
+                        .map(item -> objectMapper.convertValue(item, NodeExecuteDto.class))
+                        .collect(Collectors.toCollection(ArrayList::new));
+            }
+        } catch (Exception e) {
+            log.warn("读取分析检查点失败", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * 任务完成后清除检查点与会话进度
+     * @param checkpointId 检查点线程ID
+     * @param config 检查点配置
+     */
+    private void clearCheckpoint(String checkpointId, RunnableConfig config) {
+        try {
+            sessionProgressStore.clear(checkpointId);
+            redisSaver.clear(config);
+        } catch (Exception e) {
+            log.warn("清除分析检查点失败, threadId: {}", checkpointId, e);
+        }
+    }
+
+    /**
+     * 判断文件自上次分析后是否只在末尾追加了内容
+     * @param dataInfo 文件信息
+     * @param content 当前文件内容
+     * @return 是否可以增量分析
+     */
+    private boolean isAppendOnly(DataInfo dataInfo, String content) {
+        Integer analyzedOffset = dataInfo.getAnalyzedOffset();
+        if (!incrementalEnabled || analyzedOffset == null || analyzedOffset <= 0
+                || analyzedOffset > content.length() || dataInfo.getAnalyzedHash() == null) {
+            return false;
+        }
+        String prefixHash = DigestUtils.md5DigestAsHex(content.substring(0, analyzedOffset).getBytes(StandardCharsets.UTF_8));
+        return prefixHash.equals(dataInfo.getAnalyzedHash());
+    }
+
+    /**
+     * 根据用户配置选择分析工作流
+     * @param userId 用户ID
+     * @return 编译后的分析工作流
+     */
+    public CompiledGraph resolveGraph(Long userId) {
+        UserConfig userConfig = userService.getUserConfig(userId);
+        String graphMode = defaultGraphMode;
+        if (userConfig != null && StringUtils.hasText(userConfig.getAnalysisGraphMode())) {
+            graphMode = userConfig.getAnalysisGraphMode();
+        }
+        return GRAPH_MODE_FUSED.equals(graphMode) ? fusedAnalysisCompiledGraph : analysisCompiledGraph;
+    }
 
+    /**
+     * 标记文件正在分析
+     * @param fileId 文件ID
+     */
+    public void markFileProcessing(Long fileId) {
+        markFileStatus(fileId, CommonConstant.FILE_PROCESS_STATUS_PROCESSING);
+    }
+
+    /**
+     * 标记文件分析失败
+     * @param fileId 文件ID
+     */
+    public void markFileError(Long fileId) {
+        markFileStatus(fileId, CommonConstant.FILE_PROCESS_STATUS_ERROR);
+    }
+
+    /**
+     * 更新文件处理状态
+     * @param fileId 文件ID
+     * @param status 处理状态
+     */
+    public void markFileStatus(Long fileId, int status) {
+        DataInfo dataInfo = fileInfoService.findById(fileId);
+        if (dataInfo != null) {
+            dataInfo.setProcessedStatus(status);
+            fileInfoService.update(dataInfo);
+        }
     }
 
     /**
-     * 处理分析结果
+     * 处理分析结果：各会话的结果已在分析节点中逐个保存，这里补存遗漏的会话、替换旧结果并更新文件状态
      * @param overAllState 图计算引擎返回的分析结果
      * @param dataInfo 文件信息
+     * @param contentOffset 本次分析内容在文件中的起始偏移，全量分析为 0
+     * @return 保存的会话分析结果数量
      */
-    public void processAnalysisResult(OverAllState overAllState, DataInfo dataInfo) {
+    public int processAnalysisResult(OverAllState overAllState, DataInfo dataInfo, int contentOffset) {
         Optional<Object> nodeResultObj = overAllState.value("nodeResult");
 
         List<NodeExecuteDto> nodeExecuteDtoList = null;
 
-        List<AnalysisResult> analysisResultList = new ArrayList<>();
-        List<AnalysisTag> analysisTagList = new ArrayList<>();
-
         // 安全地转换对象类型
         if (nodeResultObj.isPresent() && nodeResultObj.get() instanceof List<?> rawList) {
             try {
@@ -112,13 +353,22 @@ public class AnalysisService {
             }
         }
 
-        // 封装结果
+        int savedCount = 0;
         if (!CollectionUtils.isEmpty(nodeExecuteDtoList)) {
             dataInfo.setProcessedStatus(CommonConstant.FILE_PROCESS_STATUS_PROCESSED);
-            for (NodeExecuteDto executeDto : nodeExecuteDtoList) {
-                String vectorId = addVectorToRedis(executeDto);
-                buildAnalysisResult(vectorId, executeDto, analysisResultList, analysisTagList);
-            }
+            // 节点中保存失败的会话在这里补存
+            List<Document> vectorBuffer = analysisResultWriter.newVectorBuffer();
+            nodeExecuteDtoList.forEach(dto -> analysisResultWriter.persist(dto, vectorBuffer));
+            analysisResultWriter.flushVectors(vectorBuffer);
+            Set<Long> savedIdSet = nodeExecuteDtoList.stream().map(NodeExecuteDto::getAnalysisId).collect(Collectors.toSet());
+
+            // 增量分析替换本次分析范围内的旧结果（该范围从旧会话的起始位置开始，已全部重新分析），全量分析替换该文件的全部旧结果
+            deleteResultsAfter(dataInfo.getId(), contentOffset, savedIdSet);
+
+            String content = Optional.ofNullable(dataInfo.getFileContent()).orElse("");
+            dataInfo.setAnalyzedOffset(content.length());
+            dataInfo.setAnalyzedHash(DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)));
+            savedCount = savedIdSet.size();
         } else {
             dataInfo.setProcessedStatus(CommonConstant.FILE_PROCESS_STATUS_ERROR);
         }
@@ -126,53 +376,28 @@ public class AnalysisService {
         // 更新文件处理状态
         fileInfoService.update(dataInfo);
 
-        analysisResultRepository.saveAll(analysisResultList);
-        for (int i = 0; i < analysisTagList.size(); i++) {
-            AnalysisTag analysisTag = analysisTagList.get(i);
-            analysisTag.setAnalysisId(analysisResultList.get(i).getId());
-        }
-        analysisTagRepository.saveAll(analysisTagList);
-
         log.info("分析结束");
+        return savedCount;
     }
 
     /**
-     * 添加到Redis向量数据库
-     * @param executeDto 节点执行结果
-     * @return 向量ID
+     * 删除文件中结束偏移大于指定偏移的旧分析结果（含标签与向量）
+     * @param fileId 文件ID
+     * @param offset 字符偏移
+     * @param keepIdSet 本次分析已保存的结果ID，不删除
      */
-    private String addVectorToRedis(NodeExecuteDto executeDto) {
-        Map<String, Object> metaDataMap = new HashMap<>();
-        metaDataMap.put("userId", executeDto.getUserId().toString());
-        metaDataMap.put("fileId", executeDto.getFileId().toString());
-        metaDataMap.put("solution", executeDto.getSolution());
-        metaDataMap.put("sessionContent", executeDto.getSessionContent());
-
-        String vectorId = UUID.randomUUID().toString();
-        Document document = new Document(vectorId, executeDto.getProblemStatement(), metaDataMap);
-        vectorStoreService.addOne(document);
-        return vectorId;
-    }
-
-    private void buildAnalysisResult(String vectorId, NodeExecuteDto executeDto, List<AnalysisResult> analysisResultList, List<AnalysisTag> analysisTagList) {
-        AnalysisResult analysisResult = new AnalysisResult();
-        analysisResult.setVectorId(vectorId);
-        analysisResult.setUserId(executeDto.getUserId());
-        analysisResult.setFileId(executeDto.getFileId());
-        analysisResult.setProblemStatement(executeDto.getProblemStatement());
-        analysisResult.setSolution(executeDto.getSolution());
-        analysisResult.setSessionStart(executeDto.getSessionStart());
-        analysisResult.setSessionEnd(executeDto.getSessionEnd());
-        analysisResult.setSessionContent(executeDto.getSessionContent());
-        analysisResult.setStatus(executeDto.getStatus());
-        analysisResult.setCreatedTime(LocalDateTime.now());
-        analysisResultList.add(analysisResult);
-
-        AnalysisTag analysisTag = new AnalysisTag();
-        analysisTag.setTagId(executeDto.getTagId());
-        analysisTag.setSubTagId(executeDto.getSubTagId());
-        analysisTag.setRecommends(executeDto.getRecommends());
-        analysisTagList.add(analysisTag);
+    private void deleteResultsAfter(Long fileId, int offset, Set<Long> keepIdSet) {
+        List<AnalysisResult> oldResultList = analysisResultRepository.findByFileIdAndSessionEndAfter(fileId, offset).stream()
+                .filter(item -> !keepIdSet.contains(item.getId()))
+                .toList();
+        if (oldResultList.isEmpty()) {
+            return;
+        }
+        List<Long> oldIdList = oldResultList.stream().map(AnalysisResult::getId).toList();
+        analysisTagRepository.deleteAll(analysisTagRepository.findByAnalysisIdIn(oldIdList));
+        vectorStoreService.delete(oldResultList.stream().map(AnalysisResult::getVectorId).filter(Objects::nonNull).toList());
+        analysisResultRepository.deleteAll(oldResultList);
+        log.info("替换旧分析结果, fileId: {}, 数量: {}", fileId, oldResultList.size());
     }
 
 
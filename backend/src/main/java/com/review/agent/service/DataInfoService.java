@@ -159,6 +159,15 @@ public class DataInfoService {
         return dataInfoRepository.findByUserId(userId);
     }
 
+    /**
+     * 查询待分析的文件（未处理或已更新）
+     * @param userId 用户ID，为空时查询所有用户
+     * @return 文件列表
+     */
+    public List<DataInfo> findPending(Long userId) {
+        return dataInfoRepository.findByProcessedStatus(userId, List.of(FILE_PROCESS_STATUS_NOT_PROCESSED, FILE_PROCESS_STATUS_UPDATE));
+    }
+
     public DataInfo importData(Long userId, String originalFilename, String content) {
         DataInfo existing = dataInfoRepository.findByFileName(originalFilename);
         if (existing == null) {
@@ -182,4 +191,15 @@ public class DataInfoService {
     public void update(DataInfo dataInfo) {
         dataInfoRepository.save(dataInfo);
     }
+
+    /**
+     * 比较并更新文件处理状态
+     * @param id 文件ID
+     * @param expectStatus 期望的当前状态
+     * @param toStatus 目标状态
+     * @return 是否更新成功
+     */
+    public boolean compareAndSetStatus(Long id, Integer expectStatus, Integer toStatus) {
+        return dataInfoRepository.compareAndSetStatus(id, expectStatus, toStatus) > 0;
+    }
 }
@@ -0,0 +1,96 @@
+package com.review.agent.service;
+
+import com.review.agent.common.utils.ExceptionUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 文件级分布式锁：提交分析时串行化同一文件的提交，执行分析时保证同一文件同时只有一个任务在跑。
+ * 锁都带租期，持有锁的实例宕机后自动释放
+ */
+@Slf4j
+@Component
+public class FileAnalysisLock {
+    @Resource
+    private RedissonClient redissonClient;
+
+    private static final String SUBMIT_KEY_PREFIX = "analysis-file-submit-lock:";
+    private static final String EXECUTE_KEY_PREFIX = "analysis-file-lock:";
+
+    /**
+     * 等待提交锁的最长时间（毫秒）
+     */
+    @Value("${analysis.file-lock.wait-ms:3000}")
+    private long waitMillis;
+
+    /**
+     * 提交锁的租期（秒）
+     */
+    @Value("${analysis.file-lock.lease-seconds:30}")
+    private long leaseSeconds;
+
+    /**
+     * 持有文件提交锁执行操作，锁被占用超过等待时间时拒绝
+     * @param fileId 文件ID
+     * @param action 持锁期间执行的操作
+     * @return 操作结果
+     */
+    public <T> T withSubmitLock(Long fileId, Supplier<T> action) {
+        RLock lock = redissonClient.getLock(SUBMIT_KEY_PREFIX + fileId);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(waitMillis, TimeUnit.SECONDS.toMillis(leaseSeconds), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!locked) {
+            ExceptionUtils.throwParamError("file analysis is being submitted, please retry later, fileId: " + fileId);
+        }
+        try {
+            return action.get();
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * 获取文件执行锁，不等待；锁由看门狗续期，实例宕机后随租期过期释放
+     * @param fileId 文件ID
+     * @return 获取到的锁，文件正被其他任务分析时为 null
+     */
+    public RLock tryLockExecution(Long fileId) {
+        RLock lock = redissonClient.getLock(EXECUTE_KEY_PREFIX + fileId);
+        try {
+            return lock.tryLock(0, TimeUnit.MILLISECONDS) ? lock : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 释放锁；取消任务时线程可能带有中断标记，释放期间暂时清除
+     * @param lock 持有的锁
+     */
+    public void unlock(RLock lock) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            log.warn("释放文件锁失败, lock: {}", lock.getName(), e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
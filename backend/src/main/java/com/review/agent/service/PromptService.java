@@ -24,6 +24,9 @@ public class PromptService {
     private static final String[] PROMPT_FILES = {"prompts/Analysis-agent-prompt.md", "prompts/Classify-agent-prompt.md",
             "prompts/Extract-agent-prompt.md", "prompts/Report-agent-prompt.md", "prompts/Chat-agent-prompt.md"};
 
+    // 模板变量占位符
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{\\w+}");
+
     private Map<String, String> promptTemplates = new HashMap<>();
 
     private boolean initialized = false;
@@ -80,10 +83,29 @@ public class PromptService {
             String fullPromptName = buildPromptName(fileName, promptName);
 
             promptTemplates.put(fullPromptName, promptTemplate);
+            checkVariablePosition(fullPromptName, promptTemplate);
             log.debug("加载提示词: {} -> {}", fullPromptName, promptName);
         }
     }
 
+    /**
+     * 检查变量是否都在模板的最后一节：模型服务按前缀缓存提示词，变量之前的内容对所有用户、所有调用保持一致才能命中缓存
+     */
+    private void checkVariablePosition(String promptName, String template) {
+        int prefixEnd = staticPrefixEnd(template);
+        if (prefixEnd < template.length() && template.indexOf("\n#", prefixEnd) >= 0) {
+            log.warn("提示词 {} 的变量之后还有其他章节，这部分内容无法复用模型的前缀缓存，请将变量移到模板末尾", promptName);
+        }
+    }
+
+    /**
+     * 模板中第一个变量的位置，之前的内容为固定前缀
+     */
+    private int staticPrefixEnd(String template) {
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        return matcher.find() ? matcher.start() : template.length();
+    }
+
     /**
      * 构建提示词名称，消除复杂的条件链
      */
@@ -190,6 +212,15 @@ public class PromptService {
         return buildPrompt("Classify.文本分类提示词", variables);
     }
 
+    /**
+     * 获取分类分析一体化提示词
+     */
+    public String getClassifyAnalysisPrompt(String categories) throws PromptProcessingException {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("categories", categories);
+        return buildPrompt("Analysis.分类分析一体化提示词", variables);
+    }
+
     /**
      * 获取会话提取提示词
      */
@@ -199,6 +230,13 @@ public class PromptService {
         return buildPrompt("Extract.会话提取提示词", variables);
     }
 
+    /**
+     * 获取会话边界判断提示词
+     */
+    public String getSessionBoundaryPrompt() throws PromptProcessingException {
+        return buildPrompt("Extract.会话边界判断提示词", new HashMap<>());
+    }
+
     /**
      * 获取日报生成提示词
      */
@@ -1,12 +1,12 @@
 package com.review.agent.service;
 
 import com.alibaba.cloud.ai.graph.CompiledGraph;
-import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import com.review.agent.common.utils.MailUtils;
 import com.review.agent.entity.pojo.AnalysisResult;
 import com.review.agent.entity.pojo.ReportData;
 import com.review.agent.entity.pojo.UserInfo;
+import com.review.agent.graph.support.StructuredOutputParser;
 import com.review.agent.repository.*;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +54,8 @@ public class ReportService {
 
     @Resource
     private ChatClient analysisChatClient;
+    @Resource
+    private StructuredOutputParser structuredOutputParser;
 
     /**
      * 获取报告列表
@@ -173,21 +175,12 @@ public class ReportService {
                 .content();
 
         if (StringUtils.hasText(response)) {
-            response = formatResult(response);
-            JSONObject jsonObject = JSON.parseObject(response);
-            return jsonObject.getString("report_html");
+            JSONObject jsonObject = structuredOutputParser.parseObject(response);
+            if (jsonObject == null || jsonObject.getString("report_html") == null) {
+                return null;
+            }
+            return jsonObject.getString("report_html").replace("\n", "");
         }
         return null;
     }
-
-    public String formatResult(String result) {
-        if (result == null) {
-            return "";
-        }
-        return result.replaceAll("^\\s*```json\\s*", "")   // 去除开头 ```json
-                .replaceAll("^\\s*```\\s*", "")       // 或者可能是 ``` 开头
-                .replaceAll("\\s*```\\s*$", "")
-                .replace("\\n", "")// 去除结尾 ```
-                .trim();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.review.agent.service;
+
+import com.review.agent.entity.dto.NodeExecuteDto;
+import com.review.agent.entity.pojo.AnalysisResult;
+import com.review.agent.entity.pojo.AnalysisTag;
+import com.review.agent.repository.AnalysisResultRepository;
+import com.review.agent.repository.AnalysisTagRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.review.agent.common.constant.CommonConstant.ANALYSIS_STATUS_PROCESSED;
+import static com.review.agent.config.MultiLLMConfig.ANALYSIS_MODEL;
+import static com.review.agent.config.MultiLLMConfig.CLASSIFY_MODEL;
+
+/**
+ * 会话去重：按“规范化会话内容 + 提示词/模型版本”计算指纹，
+ * 同一用户已成功分析过的相同会话直接复用问题描述、解决方案和标签，不再调用模型
+ */
+@Slf4j
+@Service
+public class SessionDedupService {
+    @Resource
+    private AnalysisResultRepository analysisResultRepository;
+    @Resource
+    private AnalysisTagRepository analysisTagRepository;
+    @Resource
+    private PromptService promptService;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用会话去重
+     */
+    @Value("${analysis.dedup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 手动指定的版本号，需要让已有结果全部失效时修改
+     */
+    @Value("${analysis.dedup.version:v1}")
+    private String manualVersion;
+
+    /**
+     * 参与版本计算的提示词
+     */
+    private static final List<String> VERSION_PROMPTS = List.of("Classify.文本分类提示词", "Analysis.通用分析提示词",
+            "Analysis.BUG分析提示词", "Analysis.思维拓展分析提示词", "Analysis.分类分析一体化提示词");
+
+    private String version;
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("analysis.session.dedup")
+                .description("会话去重命中次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("analysis.session.dedup")
+                .description("会话去重未命中次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算会话指纹
+     * @param sessionContent 会话内容
+     * @return 指纹
+     */
+    public String fingerprint(String sessionContent) {
+        String normalized = Optional.ofNullable(sessionContent).orElse("")
+                .replaceAll("\\s+", " ")
+                .trim();
+        return DigestUtils.md5DigestAsHex((getVersion() + "\n" + normalized).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 计算会话指纹，并用已有的分析结果填充命中的会话（标记为 reused）
+     * @param userId 用户ID
+     * @param nodeDtoList 会话列表
+     * @return 命中数量
+     */
+    public int applyCached(Long userId, List<NodeExecuteDto> nodeDtoList) {
+        for (NodeExecuteDto dto : nodeDtoList) {
+            dto.setFingerprint(fingerprint(dto.getSessionContent()));
+        }
+        if (!enabled || nodeDtoList.isEmpty()) {
+            return 0;
+        }
+
+        List<String> fingerprintList = nodeDtoList.stream().map(NodeExecuteDto::getFingerprint).distinct().toList();
+        Map<String, AnalysisResult> resultMap = analysisResultRepository
+                .findByUserIdAndFingerprintIn(userId, fingerprintList, ANALYSIS_STATUS_PROCESSED).stream()
+                .collect(Collectors.toMap(AnalysisResult::getFingerprint, Function.identity(), (a, b) -> a.getId() > b.getId() ? a : b));
+        Map<Long, AnalysisTag> tagMap = resultMap.isEmpty() ? Map.of() : analysisTagRepository
+                .findByAnalysisIdIn(resultMap.values().stream().map(AnalysisResult::getId).toList()).stream()
+                .collect(Collectors.toMap(AnalysisTag::getAnalysisId, Function.identity(), (a, b) -> a));
+
+        int hit = 0;
+        for (NodeExecuteDto dto : nodeDtoList) {
+            AnalysisResult cached = resultMap.get(dto.getFingerprint());
+            if (cached == null) {
+                continue;
+            }
+            dto.setProblemStatement(cached.getProblemStatement());
+            dto.setSolution(cached.getSolution());
+            dto.setStatus(cached.getStatus());
+            AnalysisTag tag = tagMap.get(cached.getId());
+            if (tag != null) {
+                dto.setTagId(tag.getTagId());
+                dto.setSubTagId(tag.getSubTagId());
+                dto.setRecommends(tag.getRecommends());
+                dto.setConfidence(tag.getConfidenceScore());
+            }
+            dto.setReused(true);
+            hit++;
+        }
+        hitCounter.increment(hit);
+        missCounter.increment(nodeDtoList.size() - hit);
+        log.info("会话去重, 命中: {}, 未命中: {}", hit, nodeDtoList.size() - hit);
+        return hit;
+    }
+
+    /**
+     * 版本由模型名称、提示词模板和手动版本号共同决定，任一变化都会使已有指纹失效
+     */
+    private String getVersion() {
+        if (version == null) {
+            StringBuilder sb = new StringBuilder(manualVersion).append('|').append(ANALYSIS_MODEL).append('|').append(CLASSIFY_MODEL);
+            for (String promptName : VERSION_PROMPTS) {
+                try {
+                    sb.append('|').append(promptService.getPromptTemplate(promptName));
+                } catch (Exception e) {
+                    log.warn("提示词模板不存在: {}", promptName);
+                }
+            }
+            version = DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return version;
+    }
+}
@@ -1,5 +1,6 @@
 package com.review.agent.service;
 
+import com.review.agent.entity.vo.AnalysisResultVo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -60,4 +61,21 @@ public class SseService {
             }
         }
     }
+
+    /**
+     * 推送单个会话的分析结果给指定用户
+     * @param userId 用户ID
+     * @param result 分析结果
+     */
+    public void sendResult(Long userId, AnalysisResultVo result) {
+        SseEmitter emitter = emitters.get(userId);
+        if (emitter != null) {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(result));
+            } catch (IOException e) {
+                log.error("Failed to send result to user: {}", userId, e);
+                emitters.remove(userId);
+            }
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package com.review.agent.service;
+
+import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.entity.pojo.AnalysisResult;
+import com.review.agent.entity.pojo.AnalysisTag;
+import com.review.agent.entity.vo.TagKnnBenchmarkVo;
+import com.review.agent.repository.AnalysisResultRepository;
+import com.review.agent.repository.AnalysisTagRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 近邻标签分类对比：用用户已由模型分类的历史会话逐个做近邻投票（排除会话自身），统计覆盖率和与模型分类的一致率。
+ * 可分别按问题描述或会话内容查询，用于校准两种查询的相似度下限
+ */
+@Slf4j
+@Service
+public class TagKnnBenchmarkService {
+    @Resource
+    private AnalysisResultRepository analysisResultRepository;
+    @Resource
+    private AnalysisTagRepository analysisTagRepository;
+    @Resource
+    private TagKnnClassifier tagKnnClassifier;
+
+    private static final int MAX_SAMPLE_COUNT = 500;
+
+    /**
+     * 对比近邻分类与历史的模型分类结果
+     * @param userId 用户ID
+     * @param count 最多对比的会话数量（取最近的会话）
+     * @param byContent 是否按会话内容查询（模拟分类先于分析的工作流），否则按问题描述查询
+     * @return 对比结果
+     */
+    public TagKnnBenchmarkVo compare(Long userId, int count, boolean byContent) {
+        if (count <= 0 || count > MAX_SAMPLE_COUNT) {
+            ExceptionUtils.throwParamError("count must be between 1 and " + MAX_SAMPLE_COUNT);
+        }
+        List<AnalysisResult> resultList = analysisResultRepository.findByUserId(userId).stream()
+                .filter(result -> result.getVectorId() != null && StringUtils.hasText(result.getSessionContent()))
+                .sorted(Comparator.comparing(AnalysisResult::getId).reversed())
+                .toList();
+        Map<Long, AnalysisTag> tagMap = resultList.isEmpty() ? Map.of()
+                : analysisTagRepository.findByAnalysisIdIn(resultList.stream().map(AnalysisResult::getId).toList()).stream()
+                .filter(tag -> tag.getTagId() != null)
+                .collect(Collectors.toMap(AnalysisTag::getAnalysisId, Function.identity(), (a, b) -> a));
+        List<AnalysisResult> sampleList = resultList.stream()
+                .filter(result -> tagMap.containsKey(result.getId()))
+                .limit(count)
+                .toList();
+        if (sampleList.isEmpty()) {
+            ExceptionUtils.throwDataNotFound("no tagged analysis result to benchmark, userId: " + userId);
+        }
+
+        int covered = 0;
+        int agreed = 0;
+        int subAgreed = 0;
+        long start = System.currentTimeMillis();
+        for (AnalysisResult result : sampleList) {
+            TagKnnClassifier.KnnTagResult knnResult = tagKnnClassifier.classify(userId,
+                    byContent ? null : result.getProblemStatement(), result.getSessionContent(), null, null, result.getVectorId());
+            if (knnResult == null) {
+                continue;
+            }
+            covered++;
+            AnalysisTag tag = tagMap.get(result.getId());
+            if (Objects.equals(knnResult.tagId(), tag.getTagId())) {
+                agreed++;
+                if (new HashSet<>(knnResult.subTagIdList()).equals(parseIds(tag.getSubTagId()))) {
+                    subAgreed++;
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        TagKnnBenchmarkVo vo = new TagKnnBenchmarkVo();
+        vo.setSampleCount(sampleList.size());
+        vo.setCoveredCount(covered);
+        vo.setCoverage((double) covered / sampleList.size());
+        vo.setAgreedCount(agreed);
+        vo.setAgreement(covered == 0 ? null : (double) agreed / covered);
+        vo.setSubTagAgreement(covered == 0 ? null : (double) subAgreed / covered);
+        vo.setAvgLatencyMillis((double) elapsed / sampleList.size());
+        log.info("近邻分类对比完成, userId: {}, 按会话内容查询: {}, 会话数: {}, 覆盖: {}, 主标签一致: {}", userId, byContent,
+                sampleList.size(), covered, agreed);
+        return vo;
+    }
+
+    private Set<Long> parseIds(String ids) {
+        if (!StringUtils.hasText(ids)) {
+            return Set.of();
+        }
+        return Arrays.stream(ids.split(","))
+                .filter(StringUtils::hasText)
+                .map(id -> Long.parseLong(id.trim()))
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,148 @@
+package com.review.agent.service;
+
+import com.review.agent.config.TagKnnConfig;
+import com.review.agent.entity.pojo.AnalysisResult;
+import com.review.agent.entity.pojo.AnalysisTag;
+import com.review.agent.repository.AnalysisResultRepository;
+import com.review.agent.repository.AnalysisTagRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 向量近邻标签分类：在用户已有分析结果的向量中查找与会话相似的历史会话，
+ * 按相似度加权投票决定主标签和子标签，票数足够集中时直接采用，否则交给模型分类。
+ * 存储的向量是问题描述，会话已有问题描述时以问题描述查询，否则以会话内容查询并使用单独的相似度下限
+ */
+@Slf4j
+@Service
+public class TagKnnClassifier {
+    @Resource
+    private TagKnnConfig knnConfig;
+    @Resource
+    private VectorStoreService vectorStoreService;
+    @Resource
+    private AnalysisResultRepository analysisResultRepository;
+    @Resource
+    private AnalysisTagRepository analysisTagRepository;
+
+    /**
+     * 最多采用的子标签数量，与分类提示词一致
+     */
+    private static final int MAX_SUB_TAGS = 3;
+
+    public boolean isEnabled() {
+        return knnConfig.isEnabled();
+    }
+
+    /**
+     * 按相似的历史会话投票分类
+     * @param userId 用户ID
+     * @param problemStatement 会话的问题描述，可为空
+     * @param sessionContent 会话内容，没有问题描述时用于查询
+     * @param validMainTagIds 当前有效的主标签ID（已删除的标签不参与投票），为空时不校验
+     * @param validSubTagIds 当前有效的子标签ID，为空时不校验；主标签与子标签的ID来自不同的表，需分别校验
+     * @param excludeVectorId 排除的向量ID（对比历史数据时排除会话自身），可为空
+     * @return 分类结果，近邻不足或票数不够集中时为 null
+     */
+    public KnnTagResult classify(Long userId, String problemStatement, String sessionContent, Collection<Long> validMainTagIds,
+                                 Collection<Long> validSubTagIds, String excludeVectorId) {
+        String query;
+        double threshold;
+        if (StringUtils.hasText(problemStatement)) {
+            query = problemStatement;
+            threshold = knnConfig.getSimilarityThreshold();
+        } else if (StringUtils.hasText(sessionContent)) {
+            query = sessionContent.length() > knnConfig.getMaxQueryChars()
+                    ? sessionContent.substring(0, knnConfig.getMaxQueryChars()) : sessionContent;
+            threshold = knnConfig.getContentSimilarityThreshold();
+        } else {
+            return null;
+        }
+        int topK = knnConfig.getTopK() + (excludeVectorId == null ? 0 : 1);
+        List<Document> neighborList = vectorStoreService.searchByUser(query, userId, topK, threshold)
+                .stream()
+                .filter(document -> !document.getId().equals(excludeVectorId))
+                .limit(knnConfig.getTopK())
+                .toList();
+        if (neighborList.size() < knnConfig.getMinNeighbors()) {
+            return null;
+        }
+
+        // 向量 -> 分析结果 -> 标签
+        Map<String, Long> analysisIdMap = analysisResultRepository.findByVectorIdIn(neighborList.stream().map(Document::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(AnalysisResult::getVectorId, AnalysisResult::getId, (a, b) -> a));
+        Map<Long, AnalysisTag> tagMap = analysisIdMap.isEmpty() ? Map.of()
+                : analysisTagRepository.findByAnalysisIdIn(new ArrayList<>(analysisIdMap.values())).stream()
+                .filter(tag -> tag.getTagId() != null)
+                .collect(Collectors.toMap(AnalysisTag::getAnalysisId, Function.identity(), (a, b) -> a));
+
+        Map<Long, Double> mainWeightMap = new HashMap<>();
+        Map<Long, Map<Long, Double>> subWeightMap = new HashMap<>();
+        double totalWeight = 0;
+        int voteCount = 0;
+        for (Document neighbor : neighborList) {
+            AnalysisTag tag = tagMap.get(analysisIdMap.get(neighbor.getId()));
+            if (tag == null || (validMainTagIds != null && !validMainTagIds.contains(tag.getTagId()))) {
+                continue;
+            }
+            double weight = neighbor.getScore() == null ? threshold : neighbor.getScore();
+            totalWeight += weight;
+            voteCount++;
+            mainWeightMap.merge(tag.getTagId(), weight, Double::sum);
+            Map<Long, Double> subWeights = subWeightMap.computeIfAbsent(tag.getTagId(), k -> new HashMap<>());
+            for (Long subTagId : parseIds(tag.getSubTagId())) {
+                if (validSubTagIds == null || validSubTagIds.contains(subTagId)) {
+                    subWeights.merge(subTagId, weight, Double::sum);
+                }
+            }
+        }
+        if (voteCount < knnConfig.getMinNeighbors()) {
+            return null;
+        }
+
+        Map.Entry<Long, Double> best = Collections.max(mainWeightMap.entrySet(), Map.Entry.comparingByValue());
+        double agreement = best.getValue() / totalWeight;
+        if (agreement < knnConfig.getMinAgreement()) {
+            log.debug("近邻标签分歧过大, 主标签: {}, 占比: {}", best.getKey(), agreement);
+            return null;
+        }
+        List<Long> subTagIdList = subWeightMap.get(best.getKey()).entrySet().stream()
+                .filter(entry -> entry.getValue() / best.getValue() >= knnConfig.getSubTagAgreement())
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(MAX_SUB_TAGS)
+                .map(Map.Entry::getKey)
+                .toList();
+        return new KnnTagResult(best.getKey(), subTagIdList, agreement, voteCount);
+    }
+
+    private List<Long> parseIds(String ids) {
+        if (!StringUtils.hasText(ids)) {
+            return List.of();
+        }
+        List<Long> idList = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (StringUtils.hasText(id)) {
+                idList.add(Long.parseLong(id.trim()));
+            }
+        }
+        return idList;
+    }
+
+    /**
+     * 近邻投票的分类结果
+     * @param tagId 主标签ID
+     * @param subTagIdList 子标签ID列表
+     * @param agreement 主标签得票占比（按相似度加权），作为置信度
+     * @param neighbors 参与投票的近邻数量
+     */
+    public record KnnTagResult(Long tagId, List<Long> subTagIdList, double agreement, int neighbors) {
+    }
+}
@@ -18,8 +18,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -164,6 +166,34 @@ public class TagService {
         return subTagRepository.findAllById(subTagIdList);
     }
 
+    /**
+     * 构建分类提示词中的标签类别（主标签及其子标签）
+     * @param userId 用户ID
+     * @param nameToIdMap 标签名称到ID的映射，由本方法填充
+     * @return 分类类别
+     */
+    public String buildClassifyCategories(Long userId, Map<String, Long> nameToIdMap) {
+        StringBuilder stringBuilder = new StringBuilder();
+        // 按 ID 排序，标签不变时每次生成的内容完全一致，便于命中模型的前缀缓存
+        List<MainTag> mainTagList = findMainTagList(userId).stream()
+                .sorted(Comparator.comparing(MainTag::getId))
+                .toList();
+        for (MainTag mainTag : mainTagList) {
+            nameToIdMap.put(mainTag.getName(), mainTag.getId());
+            stringBuilder.append(mainTag.getName()).append("\n");
+
+            // 子标签
+            List<SubTag> subTagList = findSubTagListByMainTagId(userId, mainTag.getId()).stream()
+                    .sorted(Comparator.comparing(SubTag::getId))
+                    .toList();
+            for (SubTag subTag : subTagList) {
+                nameToIdMap.put(subTag.getName(), subTag.getId());
+                stringBuilder.append("- ").append(subTag.getName()).append("\n");
+            }
+        }
+        return stringBuilder.toString();
+    }
+
     /**
      * 添加子标签
      * @param subTag 标签
@@ -21,6 +21,8 @@ import java.time.LocalTime;
 import java.util.Date;
 import java.util.List;
 
+import static com.review.agent.common.constant.CommonConstant.GRAPH_MODE_FUSED;
+import static com.review.agent.common.constant.CommonConstant.GRAPH_MODE_STANDARD;
 import static com.review.agent.common.constant.UserConstant.SALT;
 
 @Service
@@ -143,6 +145,10 @@ public class UserService {
                 ExceptionUtils.throwParamError("scan interval must be 3600-43200 seconds");
             }
         }
+        String graphMode = updateRequest.getAnalysisGraphMode();
+        if (graphMode != null && !GRAPH_MODE_STANDARD.equals(graphMode) && !GRAPH_MODE_FUSED.equals(graphMode)) {
+            ExceptionUtils.throwParamError("analysis graph mode must be standard or fused");
+        }
         BeanUtils.copyProperties(updateRequest, userConfigFromDb, ObjectTransformUtil.getNullPropertyNames(updateRequest));
         // 构建日报的cron表达式
         if(updateRequest.getDailyAnalysisTime() != null) {
@@ -0,0 +1,100 @@
+package com.review.agent.service;
+
+import com.review.agent.common.utils.ExceptionUtils;
+import com.review.agent.entity.pojo.AnalysisResult;
+import com.review.agent.entity.vo.VectorBenchmarkVo;
+import com.review.agent.repository.AnalysisResultRepository;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 向量写入对比：用用户已有的问题描述分别逐个写入和批量写入向量数据库，统计每秒写入文档数，写入后立即删除
+ */
+@Slf4j
+@Service
+public class VectorBenchmarkService {
+    @Resource
+    private AnalysisResultRepository analysisResultRepository;
+    @Resource
+    private VectorStoreService vectorStoreService;
+    @Resource
+    private BatchingStrategy batchingStrategy;
+
+    private static final int MAX_DOCUMENT_COUNT = 200;
+
+    /**
+     * 对比逐个写入与批量写入
+     * @param userId 用户ID
+     * @param count 文档数量
+     * @return 对比结果（第一项为逐个写入）
+     */
+    public List<VectorBenchmarkVo> compareInsert(Long userId, int count) {
+        if (count <= 0 || count > MAX_DOCUMENT_COUNT) {
+            ExceptionUtils.throwParamError("count must be between 1 and " + MAX_DOCUMENT_COUNT);
+        }
+        List<String> textList = analysisResultRepository.findByUserId(userId).stream()
+                .map(AnalysisResult::getProblemStatement)
+                .filter(StringUtils::hasText)
+                .toList();
+        if (textList.isEmpty()) {
+            ExceptionUtils.throwDataNotFound("no analysis result to benchmark, userId: " + userId);
+        }
+
+        List<Document> singleList = buildDocuments(textList, count);
+        long start = System.currentTimeMillis();
+        try {
+            singleList.forEach(vectorStoreService::addOne);
+        } finally {
+            vectorStoreService.delete(singleList.stream().map(Document::getId).toList());
+        }
+        VectorBenchmarkVo single = buildVo("single", count, count, System.currentTimeMillis() - start);
+
+        List<Document> batchList = buildDocuments(textList, count);
+        int embeddingCalls = batchingStrategy.batch(batchList).size();
+        start = System.currentTimeMillis();
+        try {
+            vectorStoreService.addBatch(batchList);
+        } finally {
+            vectorStoreService.delete(batchList.stream().map(Document::getId).toList());
+        }
+        VectorBenchmarkVo batch = buildVo("batch", count, embeddingCalls, System.currentTimeMillis() - start);
+
+        for (VectorBenchmarkVo vo : List.of(single, batch)) {
+            vo.setSpeedup(single.getDocumentsPerSecond() == 0 ? null : vo.getDocumentsPerSecond() / single.getDocumentsPerSecond());
+        }
+        log.info("向量写入对比完成, 文档数量: {}, single: {} docs/s, batch: {} docs/s ({} 次向量化请求)", count,
+                single.getDocumentsPerSecond(), batch.getDocumentsPerSecond(), embeddingCalls);
+        return List.of(single, batch);
+    }
+
+    /**
+     * 构建测试文档，已有问题描述不足时循环使用
+     */
+    private List<Document> buildDocuments(List<String> textList, int count) {
+        List<Document> documentList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documentList.add(new Document(UUID.randomUUID().toString(), textList.get(i % textList.size()),
+                    Map.of("userId", "benchmark")));
+        }
+        return documentList;
+    }
+
+    private VectorBenchmarkVo buildVo(String mode, int count, int embeddingCalls, long elapsed) {
+        VectorBenchmarkVo vo = new VectorBenchmarkVo();
+        vo.setMode(mode);
+        vo.setDocumentCount(count);
+        vo.setEmbeddingCalls(embeddingCalls);
+        vo.setElapsedMillis(elapsed);
+        vo.setDocumentsPerSecond(count * 1000.0 / Math.max(1, elapsed));
+        return vo;
+    }
+}
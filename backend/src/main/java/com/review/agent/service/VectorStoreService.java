@@ -36,6 +36,23 @@ public class VectorStoreService {
         return documentList.get(0);
     }
 
+    /**
+     * 在用户自己的向量中搜索相似文档
+     * @param query 查询文本
+     * @param userId 用户ID
+     * @param topK 最多返回的文档数
+     * @param similarityThreshold 相似度下限
+     * @return 相似文档，按相似度从高到低排列
+     */
+    public List<Document> searchByUser(String query, Long userId, int topK, double similarityThreshold) {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression("userId == '" + userId + "'")
+                .build());
+    }
+
     /**
      * 添加一个文档到向量数据库
      * @param document 文档
@@ -43,4 +60,24 @@ public class VectorStoreService {
     public void addOne(Document document) {
         vectorStore.add(List.of(document));
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量添加文档到向量数据库：按分批策略合并向量化请求，Redis 写入通过 pipeline 一次提交
+     * @param documentList 文档列表
+     */
+    public void addBatch(List<Document> documentList) {
+        if (!documentList.isEmpty()) {
+            vectorStore.add(documentList);
+        }
+    }
+
+    /**
+     * 删除向量文档
+     * @param idList 文档ID列表
+     */
+    public void delete(List<String> idList) {
+        if (!idList.isEmpty()) {
+            vectorStore.delete(idList);
+        }
+    }
+}
@@ -6,14 +6,38 @@ CREATE TABLE analysis_result
     user_id           BIGINT  NOT NULL COMMENT '用户id',
     problem_statement VARCHAR(255) NULL COMMENT '用户的问题描述',
     solution          LONGTEXT NULL COMMENT 'AI回复的解决方案',
-    session_start     TINYINT NULL COMMENT '会话开始索引',
-    session_end       TINYINT NULL COMMENT '会话结束索引',
+    session_start     INT     NULL COMMENT '会话开始字符偏移',
+    session_end       INT     NULL COMMENT '会话结束字符偏移',
     session_content   LONGTEXT NULL COMMENT '会话内容',
+    fingerprint       VARCHAR(32) NULL COMMENT '会话指纹（规范化内容 + 提示词/模型版本）',
     status            TINYINT NOT NULL COMMENT '状态（0=失败 1=成功）',
     created_time      datetime DEFAULT NOW() NULL COMMENT '创建时间',
-    CONSTRAINT `PRIMARY` PRIMARY KEY (id)
+    CONSTRAINT `PRIMARY` PRIMARY KEY (id),
+    INDEX idx_user_fingerprint (user_id, fingerprint)
 );
 
+CREATE TABLE analysis_job
+(
+    id            BIGINT AUTO_INCREMENT NOT NULL,
+    user_id       BIGINT                NOT NULL COMMENT '用户id',
+    file_id       BIGINT                NOT NULL COMMENT '文件数据ID',
+    status        TINYINT  DEFAULT 0    NULL COMMENT '任务状态（0=排队中 1=执行中 2=已完成 3=失败 4=已取消 5=超时）',
+    attempts      INT      DEFAULT 0    NULL COMMENT '已尝试次数',
+    priority      TINYINT  DEFAULT 0    NULL COMMENT '优先级（0=交互 1=后台）',
+    stage         VARCHAR(50)           NULL COMMENT '当前执行到的节点',
+    error_message VARCHAR(500)          NULL COMMENT '失败原因',
+    batch_id      VARCHAR(64)           NULL COMMENT '批量分析批次ID',
+    session_count INT                   NULL COMMENT '分析出的会话数量',
+    prompt_tokens BIGINT   DEFAULT 0    NULL COMMENT '输入token数',
+    completion_tokens BIGINT DEFAULT 0  NULL COMMENT '输出token数',
+    cached_prompt_tokens BIGINT DEFAULT 0 NULL COMMENT '命中前缀缓存的输入token数',
+    created_time  datetime              NULL COMMENT '入队时间',
+    started_time  datetime              NULL COMMENT '开始执行时间',
+    finished_time datetime              NULL COMMENT '结束时间',
+    not_before    datetime              NULL COMMENT '最早可派发时间（文件正被其他任务分析时延迟派发）',
+    CONSTRAINT `PRIMARY` PRIMARY KEY (id)
+) COMMENT ='分析任务队列';
+
 CREATE TABLE analysis_tag
 (
     id          BIGINT AUTO_INCREMENT NOT NULL,
@@ -32,9 +56,11 @@ CREATE TABLE data_info
     file_path        VARCHAR(255) NOT NULL COMMENT '文件路径',
     file_name        VARCHAR(100) NOT NULL COMMENT '文件名（日期+时间）',
     file_content     LONGTEXT NULL COMMENT '文件内容',
-    processed_status TINYINT  DEFAULT 0 NULL COMMENT '处理状态（0=未分析, 1=正在分析 2=已分析 3=有更新 4=分析失败）',
+    processed_status TINYINT  DEFAULT 0 NULL COMMENT '处理状态（0=未分析, 1=正在分析 2=已分析 3=有更新 4=分析失败 5=已取消 6=分析超时）',
     created_time     datetime DEFAULT NOW() NULL COMMENT '创建时间',
     update_time      datetime NULL COMMENT '文件上一次修改时间',
+    analyzed_offset  INT      DEFAULT 0 NULL COMMENT '已分析内容的结束字符偏移',
+    analyzed_hash    VARCHAR(32) NULL COMMENT '已分析内容的MD5',
     CONSTRAINT `PRIMARY` PRIMARY KEY (id)
 ) COMMENT ='文件信息（模型对话数据）';
 
@@ -114,6 +140,7 @@ CREATE TABLE user_config
     daily_cron               VARCHAR(50) NULL COMMENT '指定日报的cron',
     weekly_enabled           TINYINT NULL COMMENT '是否启用周报功能',
     weekly_cron              VARCHAR(50) NULL COMMENT '指定周报的cron',
+    analysis_graph_mode      VARCHAR(20) NULL COMMENT '分析工作流模式（standard / fused）',
     CONSTRAINT `PRIMARY` PRIMARY KEY (id)
 );
 
@@ -146,14 +173,38 @@ CREATE TABLE analysis_result
     user_id           BIGINT                 NOT NULL COMMENT '用户id',
     problem_statement VARCHAR(255)           NULL COMMENT '用户的问题描述',
     solution          LONGTEXT               NULL COMMENT 'AI回复的解决方案',
-    session_start     TINYINT                NULL COMMENT '会话开始索引',
-    session_end       TINYINT                NULL COMMENT '会话结束索引',
+    session_start     INT                    NULL COMMENT '会话开始字符偏移',
+    session_end       INT                    NULL COMMENT '会话结束字符偏移',
     session_content   LONGTEXT               NULL COMMENT '会话内容',
+    fingerprint       VARCHAR(32)            NULL COMMENT '会话指纹（规范化内容 + 提示词/模型版本）',
     status            TINYINT                NOT NULL COMMENT '状态（0=失败 1=成功）',
     created_time      datetime DEFAULT NOW() NULL COMMENT '创建时间',
-    CONSTRAINT `PRIMARY` PRIMARY KEY (id)
+    CONSTRAINT `PRIMARY` PRIMARY KEY (id),
+    INDEX idx_user_fingerprint (user_id, fingerprint)
 );
 
+CREATE TABLE analysis_job
+(
+    id            BIGINT AUTO_INCREMENT NOT NULL,
+    user_id       BIGINT                NOT NULL COMMENT '用户id',
+    file_id       BIGINT                NOT NULL COMMENT '文件数据ID',
+    status        TINYINT  DEFAULT 0    NULL COMMENT '任务状态（0=排队中 1=执行中 2=已完成 3=失败 4=已取消 5=超时）',
+    attempts      INT      DEFAULT 0    NULL COMMENT '已尝试次数',
+    priority      TINYINT  DEFAULT 0    NULL COMMENT '优先级（0=交互 1=后台）',
+    stage         VARCHAR(50)           NULL COMMENT '当前执行到的节点',
+    error_message VARCHAR(500)          NULL COMMENT '失败原因',
+    batch_id      VARCHAR(64)           NULL COMMENT '批量分析批次ID',
+    session_count INT                   NULL COMMENT '分析出的会话数量',
+    prompt_tokens BIGINT   DEFAULT 0    NULL COMMENT '输入token数',
+    completion_tokens BIGINT DEFAULT 0  NULL COMMENT '输出token数',
+    cached_prompt_tokens BIGINT DEFAULT 0 NULL COMMENT '命中前缀缓存的输入token数',
+    created_time  datetime              NULL COMMENT '入队时间',
+    started_time  datetime              NULL COMMENT '开始执行时间',
+    finished_time datetime              NULL COMMENT '结束时间',
+    not_before    datetime              NULL COMMENT '最早可派发时间（文件正被其他任务分析时延迟派发）',
+    CONSTRAINT `PRIMARY` PRIMARY KEY (id)
+) COMMENT ='分析任务队列';
+
 CREATE TABLE analysis_tag
 (
     id               BIGINT AUTO_INCREMENT NOT NULL,
@@ -172,9 +223,11 @@ CREATE TABLE data_info
     file_path        VARCHAR(255)           NOT NULL COMMENT '文件路径',
     file_name        VARCHAR(100)           NOT NULL COMMENT '文件名（日期+时间）',
     file_content     LONGTEXT               NULL COMMENT '文件内容',
-    processed_status TINYINT  DEFAULT 0     NULL COMMENT '处理状态（0=未分析, 1=正在分析 2=已分析 3=有更新 4=分析失败）',
+    processed_status TINYINT  DEFAULT 0     NULL COMMENT '处理状态（0=未分析, 1=正在分析 2=已分析 3=有更新 4=分析失败 5=已取消 6=分析超时）',
     created_time     datetime DEFAULT NOW() NULL COMMENT '创建时间',
     update_time      datetime               NULL COMMENT '文件上一次修改时间',
+    analyzed_offset  INT      DEFAULT 0     NULL COMMENT '已分析内容的结束字符偏移',
+    analyzed_hash    VARCHAR(32)            NULL COMMENT '已分析内容的MD5',
     CONSTRAINT `PRIMARY` PRIMARY KEY (id)
 ) COMMENT ='文件信息（模型对话数据）';
 
@@ -254,6 +307,7 @@ CREATE TABLE user_config
     daily_cron               VARCHAR(50)                  NULL COMMENT '指定日报的cron',
     weekly_enabled           TINYINT                      NULL COMMENT '是否启用周报功能',
     weekly_cron              VARCHAR(50)                  NULL COMMENT '指定周报的cron',
+    analysis_graph_mode      VARCHAR(20)                  NULL COMMENT '分析工作流模式（standard / fused）',
     CONSTRAINT `PRIMARY` PRIMARY KEY (id)
 );
 
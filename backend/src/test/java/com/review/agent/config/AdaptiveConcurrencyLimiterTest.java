@@ -0,0 +1,137 @@
+package com.review.agent.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自适应并发限制（AIMD）：并发用满时加性增长，限流或超时按比例下调且每轮只下调一次，取消的调用不调整上限
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private LlmLimiterConfig limiterConfig;
+
+    @BeforeEach
+    void setUp() {
+        limiterConfig = new LlmLimiterConfig();
+        limiterConfig.setMinLimit(2);
+        limiterConfig.setMaxLimit(64);
+        limiterConfig.setBackoffRatio(0.5);
+        // 测试中的调用耗时只有纳秒级，放宽耗时突增的判断，只验证上限随并发的变化
+        limiterConfig.setLatencyTolerance(1e9);
+        limiterConfig.setAcquireTimeoutSeconds(0);
+    }
+
+    @Test
+    void growsAdditivelyOnlyWhileConcurrencyIsUsed() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(4);
+
+        // 每轮占用 4 个名额，上限增长到并发的两倍后不再增长
+        for (int round = 0; round < 100; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permitList = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                permitList.add(limiter.acquire("test"));
+            }
+            permitList.forEach(permit -> permit.release(null));
+        }
+
+        assertEquals(8, limiter.currentLimit());
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(8);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire("test").release(null);
+        }
+
+        assertEquals(8, limiter.currentLimit());
+    }
+
+    @Test
+    void backsOffOncePerRoundOnThrottlingAndTimeout() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(10);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire("test");
+        AdaptiveConcurrencyLimiter.Permit second = limiter.acquire("test");
+
+        first.release(new RuntimeException("HTTP 429 Too Many Requests"));
+        assertEquals(5, limiter.currentLimit());
+
+        // 下调前发出的请求再失败不重复下调
+        second.release(new RuntimeException("HTTP 429 Too Many Requests"));
+        assertEquals(5, limiter.currentLimit());
+
+        limiter.acquire("test").release(new RuntimeException("read timed out", new TimeoutException()));
+        assertEquals(2, limiter.currentLimit());
+
+        // 不低于下限
+        limiter.acquire("test").release(new RuntimeException("Throttling.RateQuota"));
+        assertEquals(2, limiter.currentLimit());
+    }
+
+    @Test
+    void otherErrorsDoNotChangeLimit() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(4);
+
+        limiter.acquire("test").release(new IllegalArgumentException("invalid parameter"));
+
+        assertEquals(4, limiter.currentLimit());
+    }
+
+    @Test
+    void cancelledPermitIsReturnedWithoutAdjustingLimit() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(2);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire("test");
+        limiter.acquire("test");
+        assertThrows(IllegalStateException.class, () -> limiter.acquire("test"));
+
+        first.cancel();
+        // 重复释放忽略
+        first.release(new RuntimeException("HTTP 429 Too Many Requests"));
+
+        limiter.acquire("test");
+        assertEquals(2, limiter.currentLimit());
+    }
+
+    @Test
+    void reportsWaitingCallsUntilPermitIsReleased() throws Exception {
+        limiterConfig.setAcquireTimeoutSeconds(10);
+        AdaptiveConcurrencyLimiter limiter = newLimiter(2);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire("test");
+        limiter.acquire("test");
+        assertFalse(limiter.hasWaiting());
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter = CompletableFuture.supplyAsync(() -> limiter.acquire("test"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!limiter.hasWaiting() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(limiter.hasWaiting());
+
+        first.release(null);
+        waiter.get(5, TimeUnit.SECONDS);
+        assertFalse(limiter.hasWaiting());
+    }
+
+    private AdaptiveConcurrencyLimiter newLimiter(int initialLimit) {
+        limiterConfig.setInitialLimit(initialLimit);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "limiterConfig", limiterConfig);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", new SimpleMeterRegistry());
+        limiter.init();
+        return limiter;
+    }
+}
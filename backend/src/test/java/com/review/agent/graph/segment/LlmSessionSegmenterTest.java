@@ -0,0 +1,86 @@
+package com.review.agent.graph.segment;
+
+import com.review.agent.config.SessionSegmentConfig;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 模型会话拆分的窗口切分与跨窗口合并：重叠区域以中点为界，每条记录是否为会话起点由其所属窗口决定
+ */
+class LlmSessionSegmenterTest {
+
+    private SessionSegmentConfig segmentConfig;
+    private LlmSessionSegmenter segmenter;
+
+    @BeforeEach
+    void setUp() {
+        segmentConfig = new SessionSegmentConfig();
+        segmentConfig.setWindowMaxRecords(4);
+        segmentConfig.setWindowOverlapRecords(2);
+        segmenter = new LlmSessionSegmenter();
+        ReflectionTestUtils.setField(segmenter, "segmentConfig", segmentConfig);
+    }
+
+    @Test
+    void windowsOverlapByConfiguredRecords() {
+        assertEquals(List.of(new SessionRange(1, 4), new SessionRange(3, 6), new SessionRange(5, 8), new SessionRange(7, 10)),
+                buildWindows(10));
+    }
+
+    @Test
+    void smallFileIsOneWindow() {
+        assertEquals(List.of(new SessionRange(1, 3)), buildWindows(3));
+    }
+
+    @Test
+    void sessionCrossingWindowBoundaryIsMerged() {
+        // 第一个窗口只看到会话 3-4 的前半部分，第二个窗口看到完整的 3-5
+        List<SessionRange> windowList = List.of(new SessionRange(1, 4), new SessionRange(3, 6));
+        List<List<SessionRange>> resultList = List.of(
+                List.of(new SessionRange(1, 2), new SessionRange(3, 4)),
+                List.of(new SessionRange(3, 5), new SessionRange(6, 6)));
+
+        assertEquals(List.of(new SessionRange(1, 2), new SessionRange(3, 5), new SessionRange(6, 6)),
+                merge(6, windowList, resultList));
+    }
+
+    @Test
+    void overlapMidpointDecidesWhichWindowOwnsSessionStarts() {
+        // 重叠 3-5 以中点为界：3、4 归第一个窗口，5 归第二个窗口
+        List<SessionRange> windowList = List.of(new SessionRange(1, 5), new SessionRange(3, 7));
+        List<List<SessionRange>> resultList = List.of(
+                List.of(new SessionRange(1, 3), new SessionRange(4, 5)),
+                List.of(new SessionRange(3, 4), new SessionRange(5, 7)));
+
+        // 第二个窗口判定的起点 3 不在其归属范围内，忽略；第一个窗口判定的起点 4 保留
+        assertEquals(List.of(new SessionRange(1, 3), new SessionRange(4, 4), new SessionRange(5, 7)),
+                merge(7, windowList, resultList));
+    }
+
+    @Test
+    void sessionSpanningAllWindowsStaysOneSession() {
+        List<SessionRange> windowList = List.of(new SessionRange(1, 4), new SessionRange(3, 6),
+                new SessionRange(5, 8), new SessionRange(7, 10));
+        List<List<SessionRange>> resultList = windowList.stream().map(List::of).toList();
+
+        assertEquals(List.of(new SessionRange(1, 10)), merge(10, windowList, resultList));
+    }
+
+    private List<SessionRange> buildWindows(int records) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            content.append("# 2024-05-01 10:").append(String.format("%02d", i)).append(":00\n用户：第 ").append(i + 1).append(" 条\n");
+        }
+        return ReflectionTestUtils.invokeMethod(segmenter, "buildWindows", DialogueRecordIndex.of(content.toString()));
+    }
+
+    private List<SessionRange> merge(int size, List<SessionRange> windowList, List<List<SessionRange>> resultList) {
+        return ReflectionTestUtils.invokeMethod(segmenter, "merge", size, windowList, resultList);
+    }
+}
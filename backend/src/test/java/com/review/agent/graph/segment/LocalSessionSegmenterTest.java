@@ -0,0 +1,73 @@
+package com.review.agent.graph.segment;
+
+import com.review.agent.config.SessionSegmentConfig;
+import com.review.agent.graph.support.DialogueRecordIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 本地会话拆分：相似度阈值合并/拆分，模糊边界不调用模型时按阈值中点判断
+ */
+class LocalSessionSegmenterTest {
+
+    private static final String REDIS_1 = "# 2024-05-01 10:00:00\n用户：Redis 缓存过期时间怎么设置\nAI：Redis 缓存可以用 EXPIRE 设置过期时间\n";
+    private static final String REDIS_2 = "# 2024-05-01 10:05:00\n用户：Redis 缓存过期以后会立即删除吗\nAI：Redis 过期的缓存采用惰性删除和定期删除\n";
+    private static final String THREAD_POOL = "# 2024-05-02 09:00:00\n用户：Java 线程池的核心参数有哪些\nAI：核心线程数、最大线程数、阻塞队列和拒绝策略\n";
+
+    private SessionSegmentConfig segmentConfig;
+    private LocalSessionSegmenter segmenter;
+
+    @BeforeEach
+    void setUp() {
+        segmentConfig = new SessionSegmentConfig();
+        // 不调用模型，模糊边界按阈值中点判断
+        segmentConfig.setLlmFallback(false);
+        segmenter = new LocalSessionSegmenter();
+        ReflectionTestUtils.setField(segmenter, "segmentConfig", segmentConfig);
+    }
+
+    @Test
+    void emptyFileHasNoSessions() {
+        assertEquals(List.of(), segment(""));
+    }
+
+    @Test
+    void singleRecordIsOneSession() {
+        assertEquals(List.of(new SessionRange(1, 1)), segment(REDIS_1));
+    }
+
+    @Test
+    void mergesSimilarRecordsAndSplitsUnrelatedOnes() {
+        assertEquals(List.of(new SessionRange(1, 2), new SessionRange(3, 3)), segment(REDIS_1 + REDIS_2 + THREAD_POOL));
+    }
+
+    @Test
+    void ambiguousBoundaryFallsBackToThresholdMidpoint() {
+        // 相似度落在拆分与合并阈值之间，高于中点时合并
+        segmentConfig.setMergeThreshold(0.5);
+        assertEquals(List.of(new SessionRange(1, 2), new SessionRange(3, 3)), segment(REDIS_1 + REDIS_2 + THREAD_POOL));
+
+        // 中点高于相似度时拆分
+        segmentConfig.setSplitThreshold(0.2);
+        segmentConfig.setMergeThreshold(0.9);
+        assertEquals(List.of(new SessionRange(1, 1), new SessionRange(2, 2), new SessionRange(3, 3)),
+                segment(REDIS_1 + REDIS_2 + THREAD_POOL));
+    }
+
+    @Test
+    void shortRecordsAreJudgedByMidpoint() {
+        String content = "# 2024-05-01 10:00:00\n你好\n"
+                + "# 2024-05-01 10:01:00\n你好\n"
+                + "# 2024-05-01 10:02:00\n再见\n";
+        assertEquals(List.of(new SessionRange(1, 2), new SessionRange(3, 3)), segment(content));
+    }
+
+    private List<SessionRange> segment(String content) {
+        return segmenter.segment(DialogueRecordIndex.of(content), "test", false);
+    }
+}
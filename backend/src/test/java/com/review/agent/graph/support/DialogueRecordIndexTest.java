@@ -0,0 +1,83 @@
+package com.review.agent.graph.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对话记录索引：按时间标记切分记录、说明文字与无标记文件的处理、偏移查找
+ */
+class DialogueRecordIndexTest {
+
+    private static final String RECORD_1 = "# 2024-05-01 10:00:00\n用户：Redis 缓存过期怎么设置\nAI：使用 EXPIRE 命令\n";
+    private static final String RECORD_2 = "# 2024-05-01 10:05:00\n用户：过期后会自动删除吗\nAI：惰性删除加定期删除\n";
+    private static final String RECORD_3 = "# 2024-05-02 09:00:00\n用户：Java 线程池参数\nAI：核心线程数、最大线程数\n";
+
+    @Test
+    void splitsRecordsAtTimeHeaders() {
+        String content = RECORD_1 + RECORD_2 + RECORD_3;
+        DialogueRecordIndex index = DialogueRecordIndex.of(content);
+
+        assertEquals(3, index.size());
+        assertEquals(RECORD_1, index.record(1));
+        assertEquals(RECORD_2, index.record(2));
+        assertEquals(RECORD_3, index.record(3));
+        assertEquals(RECORD_1 + RECORD_2, index.slice(1, 2));
+        assertEquals(content.length(), index.end(3));
+        assertTrue(index.contains(3));
+        assertFalse(index.contains(0));
+        assertFalse(index.contains(4));
+    }
+
+    @Test
+    void preambleBeforeFirstHeaderIsNotPartOfAnyRecord() {
+        String preamble = "导出自某某客户端\n";
+        String content = preamble + RECORD_1 + RECORD_2;
+        DialogueRecordIndex index = DialogueRecordIndex.of(content);
+
+        assertEquals(2, index.size());
+        assertEquals(preamble.length(), index.start(1));
+        assertEquals(RECORD_1, index.record(1));
+        assertEquals(1, index.firstRecordFrom(0));
+    }
+
+    @Test
+    void contentWithoutHeadersIsOneRecord() {
+        String content = "用户：你好\nAI：你好，有什么可以帮你\n";
+        DialogueRecordIndex index = DialogueRecordIndex.of(content);
+
+        assertEquals(1, index.size());
+        assertEquals(content, index.record(1));
+        assertEquals("[#1]\n" + content, index.numberedContent());
+    }
+
+    @Test
+    void blankContentHasNoRecords() {
+        DialogueRecordIndex index = DialogueRecordIndex.of("  \n");
+
+        assertEquals(0, index.size());
+        assertEquals("", index.numberedContent());
+        assertEquals(1, index.firstRecordFrom(0));
+    }
+
+    @Test
+    void firstRecordFromFindsRecordStartingAtOrAfterOffset() {
+        DialogueRecordIndex index = DialogueRecordIndex.of(RECORD_1 + RECORD_2 + RECORD_3);
+
+        assertEquals(1, index.firstRecordFrom(0));
+        assertEquals(2, index.firstRecordFrom(1));
+        assertEquals(2, index.firstRecordFrom(index.start(2)));
+        assertEquals(3, index.firstRecordFrom(index.start(2) + 1));
+        assertEquals(4, index.firstRecordFrom(index.end(3)));
+    }
+
+    @Test
+    void numberedContentKeepsFileWideNumbersAndEndsEachRecordWithNewline() {
+        String lastRecord = RECORD_3.substring(0, RECORD_3.length() - 1);
+        DialogueRecordIndex index = DialogueRecordIndex.of(RECORD_1 + RECORD_2 + lastRecord);
+
+        assertEquals("[#2]\n" + RECORD_2 + "[#3]\n" + lastRecord + "\n", index.numberedContent(2, 3));
+    }
+}
@@ -0,0 +1,119 @@
+package com.review.agent.graph.support;
+
+import com.review.agent.common.exception.StructuredOutputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 容错 JSON 扫描：说明文字与代码块标记、截断修复、字符串转义、多余逗号、结构校验
+ */
+class TolerantJsonScannerTest {
+
+    record Analysis(String problem, String analysisReport) {
+    }
+
+    record Classify(String category, List<String> subCategory, Double confidence) {
+    }
+
+    @Test
+    void skipsPreambleAndCodeFenceAndIgnoresTrailingText() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Analysis.class),
+                "好的，分析结果如下：\n```json\n{\"problem\": \"缓存穿透\", \"analysisReport\": \"加布隆过滤器\"}\n```\n以上。");
+
+        assertEquals("{\"problem\": \"缓存穿透\", \"analysisReport\": \"加布隆过滤器\"}", scanner.finish());
+        assertTrue(scanner.isDone());
+        assertFalse(scanner.isRepaired());
+    }
+
+    @Test
+    void chunkedOutputMatchesWholeOutput() {
+        String output = "{\"category\": \"Redis\", \"subCategory\": [\"缓存\", \"过期\"], \"confidence\": 0.9}";
+        TolerantJsonScanner scanner = new TolerantJsonScanner(JsonShape.of(Classify.class));
+        for (int i = 0; i < output.length(); i += 3) {
+            scanner.feed(output.substring(i, Math.min(output.length(), i + 3)));
+        }
+
+        assertEquals(output, scanner.finish());
+    }
+
+    @Test
+    void truncatedStringValueIsClosed() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Analysis.class), "{\"problem\": \"缓存穿透\", \"analysisReport\": \"先校验参数");
+
+        assertEquals("{\"problem\": \"缓存穿透\", \"analysisReport\": \"先校验参数\"}", scanner.finish());
+        assertTrue(scanner.isRepaired());
+    }
+
+    @Test
+    void truncatedObjectKeepsLastCompleteValue() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Classify.class), "{\"category\": \"Redis\", \"subCategory\": [\"缓存\", \"过");
+
+        assertEquals("{\"category\": \"Redis\", \"subCategory\": [\"缓存\", \"过\"]}", scanner.finish());
+    }
+
+    @Test
+    void truncatedArrayKeepsOnlyCompleteElements() {
+        TolerantJsonScanner scanner = scan(JsonShape.array(JsonShape.Kind.OBJECT),
+                "[{\"startIndex\": 1, \"endIndex\": 2}, {\"startIndex\": 3, \"endIndex\": 5}, {\"startIndex\": 6, \"end");
+
+        assertEquals("[{\"startIndex\": 1, \"endIndex\": 2}, {\"startIndex\": 3, \"endIndex\": 5}]", scanner.finish());
+        assertTrue(scanner.isRepaired());
+    }
+
+    @Test
+    void escapesUnescapedQuotesAndNewlinesInStrings() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Analysis.class),
+                "{\"problem\": \"报错 \"NullPointerException\" 定位\", \"analysisReport\": \"第一行\n第二行\"}");
+
+        assertEquals("{\"problem\": \"报错 \\\"NullPointerException\\\" 定位\", \"analysisReport\": \"第一行\\n第二行\"}",
+                scanner.finish());
+        assertTrue(scanner.isRepaired());
+    }
+
+    @Test
+    void removesTrailingCommas() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Classify.class), "{\"category\": \"Redis\", \"subCategory\": [\"缓存\",],}");
+
+        assertEquals("{\"category\": \"Redis\", \"subCategory\": [\"缓存\"]}", scanner.finish());
+        assertTrue(scanner.isRepaired());
+    }
+
+    @Test
+    void rejectsTopLevelFieldOfWrongType() {
+        TolerantJsonScanner scanner = new TolerantJsonScanner(JsonShape.of(Classify.class));
+
+        assertThrows(StructuredOutputException.class, () -> scanner.feed("{\"category\": \"Redis\", \"subCategory\": \"缓存\""));
+    }
+
+    @Test
+    void acceptsNumberGivenAsString() {
+        TolerantJsonScanner scanner = scan(JsonShape.of(Classify.class), "{\"category\": \"Redis\", \"confidence\": \"0.9\"}");
+
+        assertEquals("{\"category\": \"Redis\", \"confidence\": \"0.9\"}", scanner.finish());
+    }
+
+    @Test
+    void outputWithoutJsonReturnsNull() {
+        assertNull(scan(JsonShape.of(Analysis.class), "抱歉，我无法完成这个请求").finish());
+    }
+
+    @Test
+    void longPreambleWithoutJsonIsRejected() {
+        TolerantJsonScanner scanner = new TolerantJsonScanner(JsonShape.array(JsonShape.Kind.OBJECT));
+
+        assertThrows(StructuredOutputException.class, () -> scanner.feed("说明".repeat(1500)));
+    }
+
+    private TolerantJsonScanner scan(JsonShape shape, String output) {
+        TolerantJsonScanner scanner = new TolerantJsonScanner(shape);
+        scanner.feed(output);
+        return scanner;
+    }
+}